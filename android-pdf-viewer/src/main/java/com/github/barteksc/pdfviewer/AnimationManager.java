@@ -52,6 +52,7 @@ class AnimationManager {
 
     public void startXAnimation(float xFrom, float xTo) {
         stopAll();
+        pdfView.loadPagesAhead(xTo, pdfView.getCurrentYOffset(), pdfView.getZoom());
         animation = ValueAnimator.ofFloat(xFrom, xTo);
         XAnimation xAnimation = new XAnimation();
         animation.setInterpolator(new DecelerateInterpolator());
@@ -63,6 +64,7 @@ class AnimationManager {
 
     public void startYAnimation(float yFrom, float yTo) {
         stopAll();
+        pdfView.loadPagesAhead(pdfView.getCurrentXOffset(), yTo, pdfView.getZoom());
         animation = ValueAnimator.ofFloat(yFrom, yTo);
         YAnimation yAnimation = new YAnimation();
         animation.setInterpolator(new DecelerateInterpolator());
@@ -74,6 +76,7 @@ class AnimationManager {
 
     public void startZoomAnimation(float centerX, float centerY, float zoomFrom, float zoomTo) {
         stopAll();
+        pdfView.loadPagesAhead(zoomTo, new PointF(centerX, centerY));
         animation = ValueAnimator.ofFloat(zoomFrom, zoomTo);
         animation.setInterpolator(new DecelerateInterpolator());
         ZoomAnimation zoomAnim = new ZoomAnimation(centerX, centerY);
@@ -133,7 +136,7 @@ class AnimationManager {
         public void onAnimationUpdate(ValueAnimator animation) {
             float offset = (Float) animation.getAnimatedValue();
             pdfView.moveTo(offset, pdfView.getCurrentYOffset());
-            pdfView.loadPageByOffset();
+            pdfView.updatePageByOffset();
         }
 
         @Override
@@ -157,7 +160,7 @@ class AnimationManager {
         public void onAnimationUpdate(ValueAnimator animation) {
             float offset = (Float) animation.getAnimatedValue();
             pdfView.moveTo(pdfView.getCurrentXOffset(), offset);
-            pdfView.loadPageByOffset();
+            pdfView.updatePageByOffset();
         }
 
         @Override
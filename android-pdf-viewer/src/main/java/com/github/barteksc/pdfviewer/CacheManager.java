@@ -20,67 +20,94 @@ import android.graphics.RectF;
 
 import androidx.annotation.Nullable;
 
+import com.github.barteksc.pdfviewer.core.PartCache;
 import com.github.barteksc.pdfviewer.model.PagePart;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.CACHE_SIZE;
+import static com.github.barteksc.pdfviewer.util.Constants.Cache.OVERVIEW_CACHE_SIZE;
 import static com.github.barteksc.pdfviewer.util.Constants.Cache.THUMBNAILS_CACHE_SIZE;
 
 class CacheManager {
 
-    private final PriorityQueue<PagePart> passiveCache;
-
-    private final PriorityQueue<PagePart> activeCache;
+    /**
+     * Parts of the current and previous sets, guarded by {@link #passiveActiveLock}
+     */
+    private final PartCache<PagePart> partCache = new PartCache<>(CACHE_SIZE);
 
     private final List<PagePart> thumbnails;
 
     private final List<PagePart> placeHolders;
 
+    /**
+     * Whole page thumbnails of the overview grid and scrubbing previews by page, in access order,
+     * so the ones not drawn for the longest time are recycled first
+     */
+    private final LinkedHashMap<Integer, PagePart> overviewThumbnails = new LinkedHashMap<>(16, 0.75f, true);
+
     private final Object passiveActiveLock = new Object();
 
-    private final PagePartComparator orderComparator = new PagePartComparator();
+    private final PagePartLevelComparator levelComparator = new PagePartLevelComparator();
 
     public CacheManager() {
-        activeCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
-        passiveCache = new PriorityQueue<>(CACHE_SIZE, orderComparator);
         placeHolders = new ArrayList<>();
         thumbnails = new ArrayList<>();
     }
 
-    public void cachePart(PagePart part) {
+    /**
+     * @param set set the part was requested by, or {@link PartCache#NO_SET}
+     */
+    public void cachePart(PagePart part, int set) {
         synchronized (passiveActiveLock) {
-            // If cache too big, remove and recycle
-            makeAFreeSpace();
+            partCache.add(part, set);
+        }
+    }
 
-            // Then add part
-            activeCache.offer(part);
+    /**
+     * Parts of given set which won't be rendered, see {@link PartCache#skipParts(int, int)}
+     */
+    public void skipParts(int set, int count) {
+        synchronized (passiveActiveLock) {
+            partCache.skipParts(set, count);
         }
     }
 
-    public void makeANewSet() {
+    /**
+     * Set level of the parts requested by given set
+     *
+     * @param set          set returned by {@link #makeANewSet()}
+     * @param level        zoom level of the parts grid
+     * @param pendingParts number of parts sent to rendering
+     */
+    public void setRequestedLevel(int set, int level, int pendingParts) {
         synchronized (passiveActiveLock) {
-            passiveCache.addAll(activeCache);
-            activeCache.clear();
+            partCache.setRequestedLevel(set, level, pendingParts);
         }
     }
 
-    private void makeAFreeSpace() {
+    /**
+     * @return id of the new set
+     */
+    public int makeANewSet() {
         synchronized (passiveActiveLock) {
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
-                    !passiveCache.isEmpty()) {
-                PagePart part = passiveCache.poll();
-                part.getRenderedBitmap().recycle();
-            }
+            return partCache.makeANewSet();
+        }
+    }
 
-            while ((activeCache.size() + passiveCache.size()) >= CACHE_SIZE &&
-                    !activeCache.isEmpty()) {
-                activeCache.poll().getRenderedBitmap().recycle();
-            }
+    /**
+     * Recycle passive parts of pages outside of given range, used by paged rendering
+     * to drop spreads which went out of the render window
+     */
+    public void recycleOutside(int firstPage, int lastPage) {
+        synchronized (passiveActiveLock) {
+            partCache.recycleOutside(firstPage, lastPage);
         }
     }
 
@@ -88,7 +115,7 @@ class CacheManager {
         synchronized (thumbnails) {
             // If cache too big, remove and recycle
             while (thumbnails.size() >= THUMBNAILS_CACHE_SIZE) {
-                thumbnails.remove(0).getRenderedBitmap().recycle();
+                thumbnails.remove(0).recycle();
             }
 
             // Then add thumbnail
@@ -97,6 +124,63 @@ class CacheManager {
 
     }
 
+    public void cacheOverviewThumbnail(PagePart part) {
+        synchronized (overviewThumbnails) {
+            PagePart previous = overviewThumbnails.put(part.getPage(), part);
+            if (previous != null) {
+                previous.recycle();
+            }
+
+            // If cache too big, remove and recycle
+            Iterator<PagePart> iterator = overviewThumbnails.values().iterator();
+            while (overviewThumbnails.size() > OVERVIEW_CACHE_SIZE && iterator.hasNext()) {
+                PagePart eldest = iterator.next();
+                iterator.remove();
+                eldest.recycle();
+            }
+        }
+    }
+
+    /**
+     * @return overview thumbnail of the page or null if it's not rendered
+     */
+    @Nullable
+    public PagePart getOverviewThumbnail(int page) {
+        synchronized (overviewThumbnails) {
+            return overviewThumbnails.get(page);
+        }
+    }
+
+    /**
+     * Return true if overview thumbnail of the page is rendered and is not much smaller than given width
+     */
+    public boolean containsOverviewThumbnail(int page, int width) {
+        synchronized (overviewThumbnails) {
+            PagePart part = overviewThumbnails.get(page);
+            return part != null && !part.getRenderedBitmap().isRecycled()
+                    && part.getRenderedBitmap().getWidth() >= width * 0.8f;
+        }
+    }
+
+    /**
+     * Drop the overview grid cache. Thumbnails of given pages become regular thumbnails,
+     * so the page is not blank while its parts are rendered
+     */
+    public void recycleOverview(int keepFirst, int keepLast) {
+        synchronized (overviewThumbnails) {
+            for (PagePart part : overviewThumbnails.values()) {
+                if (part.getPage() >= keepFirst && part.getPage() <= keepLast
+                        && !part.getRenderedBitmap().isRecycled()) {
+                    part.setOverview(false);
+                    cacheThumbnail(part);
+                } else {
+                    part.recycle();
+                }
+            }
+            overviewThumbnails.clear();
+        }
+    }
+
     public void cachePlaceHolders(PagePart part) {
         synchronized (this.placeHolders) {
             for (PagePart placeHolder : this.placeHolders) {
@@ -109,19 +193,10 @@ class CacheManager {
 
     }
 
-    public boolean upPartIfContained(int page, RectF pageRelativeBounds, int toOrder) {
-        PagePart fakePart = new PagePart(page, null, pageRelativeBounds, false, 0);
-
-        PagePart found;
+    public boolean upPartIfContained(int page, int level, RectF pageRelativeBounds, int toOrder) {
         synchronized (passiveActiveLock) {
-            if ((found = find(passiveCache, fakePart)) != null) {
-                passiveCache.remove(found);
-                found.setCacheOrder(toOrder);
-                activeCache.offer(found);
-                return true;
-            }
-
-            return find(activeCache, fakePart) != null;
+            return partCache.upPartIfContained(page, level, pageRelativeBounds.left, pageRelativeBounds.top,
+                    pageRelativeBounds.right, pageRelativeBounds.bottom, toOrder);
         }
     }
 
@@ -146,27 +221,19 @@ class CacheManager {
     private void addWithoutDuplicates(Collection<PagePart> collection, PagePart newPart) {
         for (PagePart part : collection) {
             if (part.equals(newPart)) {
-                newPart.getRenderedBitmap().recycle();
+                newPart.recycle();
                 return;
             }
         }
         collection.add(newPart);
     }
 
-    @Nullable
-    private static PagePart find(PriorityQueue<PagePart> vector, PagePart fakePart) {
-        for (PagePart part : vector) {
-            if (part.equals(fakePart)) {
-                return part;
-            }
-        }
-        return null;
-    }
-
     public List<PagePart> getPageParts() {
         synchronized (passiveActiveLock) {
-            List<PagePart> parts = new ArrayList<>(passiveCache);
-            parts.addAll(activeCache);
+            List<PagePart> parts = new ArrayList<>(partCache.size());
+            partCache.collectParts(parts);
+            // coarse parts first, so finer ones are drawn on top of them
+            Collections.sort(parts, levelComparator);
             return parts;
         }
     }
@@ -185,33 +252,32 @@ class CacheManager {
 
     public void recycle() {
         synchronized (passiveActiveLock) {
-            for (PagePart part : passiveCache) {
-                part.getRenderedBitmap().recycle();
-            }
-            passiveCache.clear();
-            for (PagePart part : activeCache) {
-                part.getRenderedBitmap().recycle();
-            }
-            activeCache.clear();
+            partCache.recycle();
         }
         synchronized (thumbnails) {
             for (PagePart part : thumbnails) {
-                part.getRenderedBitmap().recycle();
+                part.recycle();
             }
             thumbnails.clear();
         }
         synchronized (placeHolders) {
             placeHolders.clear();
         }
+        synchronized (overviewThumbnails) {
+            for (PagePart part : overviewThumbnails.values()) {
+                part.recycle();
+            }
+            overviewThumbnails.clear();
+        }
     }
 
-    class PagePartComparator implements Comparator<PagePart> {
+    class PagePartLevelComparator implements Comparator<PagePart> {
         @Override
         public int compare(PagePart part1, PagePart part2) {
-            if (part1.getCacheOrder() == part2.getCacheOrder()) {
+            if (part1.getLevel() == part2.getLevel()) {
                 return 0;
             }
-            return part1.getCacheOrder() > part2.getCacheOrder() ? 1 : -1;
+            return part1.getLevel() > part2.getLevel() ? 1 : -1;
         }
     }
 
@@ -53,6 +53,14 @@ class DecodingAsyncTask extends AsyncTask<Void, Void, Throwable> {
             PDFView pdfView = pdfViewReference.get();
             if (pdfView != null) {
                 PdfDocument pdfDocument = docSource.createDocument(pdfView.getContext(), pdfiumCore, password);
+                String layoutCacheKey = null;
+                int[] cachedPageSizes = null;
+                if (pdfView.isLayoutCacheEnabled()) {
+                    layoutCacheKey = LayoutCache.getKey(docSource, pdfView.getLayoutCacheKey());
+                }
+                if (layoutCacheKey != null) {
+                    cachedPageSizes = pdfView.layoutCache.read(layoutCacheKey, pdfiumCore.getPageCount(pdfDocument));
+                }
                 pdfFile = new PdfFile(pdfiumCore,
                         pdfDocument,
                         pdfView.getPageFitPolicy(),
@@ -63,8 +71,18 @@ class DecodingAsyncTask extends AsyncTask<Void, Void, Throwable> {
                         pdfView.isAutoSpacingEnabled(),
                         pdfView.isFitEachPage(),
                         pdfView.getRequestDisplayDualPageType(),
-                        pdfView.getPageBreaks()
+                        pdfView.getPageBreaks(),
+                        pdfView.isLazyLayout(),
+                        pdfView.getDefaultPage(),
+                        cachedPageSizes
                 );
+                pdfFile.setLayoutCacheKey(layoutCacheKey);
+                if (layoutCacheKey != null && cachedPageSizes == null) {
+                    int[] pageSizes = pdfFile.getDocumentPageSizes();
+                    if (pageSizes != null) {
+                        pdfView.layoutCache.write(layoutCacheKey, pageSizes);
+                    }
+                }
                 return null;
             } else {
                 return new NullPointerException("pdfView == null");
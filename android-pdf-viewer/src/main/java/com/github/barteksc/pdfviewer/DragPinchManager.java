@@ -26,10 +26,11 @@ import android.view.View;
 import com.github.barteksc.pdfviewer.model.DualPageDisplay;
 import com.github.barteksc.pdfviewer.model.LinkTapEvent;
 import com.github.barteksc.pdfviewer.scroll.ScrollHandle;
+import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.SnapEdge;
-import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.util.SizeF;
 
+import static com.github.barteksc.pdfviewer.util.Constants.Pinch.DEEP_ZOOM_MAXIMUM_ZOOM;
 import static com.github.barteksc.pdfviewer.util.Constants.Pinch.MAXIMUM_ZOOM;
 import static com.github.barteksc.pdfviewer.util.Constants.Pinch.MINIMUM_ZOOM;
 
@@ -49,6 +50,11 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
     private boolean scaling = false;
     private boolean enabled = false;
 
+    /**
+     * Scale of the current pinch gesture since the last change of the overview grid
+     */
+    private float overviewPinchScale = 1;
+
     DragPinchManager(PDFView pdfView, AnimationManager animationManager) {
         this.pdfView = pdfView;
         this.animationManager = animationManager;
@@ -71,6 +77,13 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
 
     @Override
     public boolean onSingleTapConfirmed(MotionEvent e) {
+        if (pdfView.isOverviewMode()) {
+            int page = pdfView.getOverviewPageAt(e.getX(), e.getY());
+            if (page >= 0) {
+                pdfView.exitOverview(page);
+            }
+            return true;
+        }
         boolean onTapHandled = pdfView.callbacks.callOnTap(e);
         boolean linkTapped = checkLinkTapped(e.getX(), e.getY());
         if (!onTapHandled && !linkTapped) {
@@ -91,34 +104,45 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
         /*
         ปิดไว้เพราะใน getPageLinks มี lock ซึ่งควรไปทำใน background thread (pdfview มีการใช้ lock ตัวนี้ใน background thread เยอะ )
         ไม่งั้น ui thread มีโอกาสค้างถ้าเกิด background thread ทำงานหนักๆ  func นี้นะ pdfFile.getPageLinks(page)
-
+        PdfFile.lock is per document now, but PdfiumCore still serializes every native call with its own
+        global lock, so getPageLinks can still wait for rendering of any document.
+        With link prefetch, links and their page relative bounds are read on the rendering thread
+        and taps only use the cached ones, without any native call.
+        */
         PdfFile pdfFile = pdfView.pdfFile;
-        if (pdfFile == null) {
+        if (pdfFile == null || !pdfView.isLinkPrefetch()) {
             return false;
         }
         float mappedX = -pdfView.getCurrentXOffset() + x;
         float mappedY = -pdfView.getCurrentYOffset() + y;
         int page = pdfFile.getPageAtOffset(pdfView.isSwipeVertical() ? mappedY : mappedX, pdfView.getZoom());
         SizeF pageSize = pdfFile.getScaledPageSize(page, pdfView.getZoom());
-        int pageX, pageY;
+        float pageX, pageY;
         if (pdfView.isSwipeVertical()) {
-            pageX = (int) pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
-            pageY = (int) pdfFile.getPageOffset(page, pdfView.getZoom());
+            pageX = pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
+            pageY = pdfFile.getPageOffset(page, pdfView.getZoom(), true);
         } else {
-            pageY = (int) pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
-            pageX = (int) pdfFile.getPageOffset(page, pdfView.getZoom());
+            pageY = pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
+            pageX = pdfFile.getPageOffset(page, pdfView.getZoom(), true);
         }
 
 
-        for (PdfDocument.Link link : pdfFile.getPageLinks(page)) {
-            RectF mapped = pdfFile.mapRectToDevice(page, pageX, pageY, (int) pageSize.getWidth(),
-                    (int) pageSize.getHeight(), link.getBounds());
-            mapped.sort();
+        LinkPrefetcher.PageLinks pageLinks = pdfView.linkPrefetcher.getCachedLinks(page);
+        if (pageLinks == null) {
+            return false;
+        }
+        for (int i = 0; i < pageLinks.bounds.length; i++) {
+            RectF bounds = pageLinks.bounds[i];
+            if (bounds == null) {
+                continue;
+            }
+            RectF mapped = new RectF(pageX + bounds.left * pageSize.getWidth(), pageY + bounds.top * pageSize.getHeight(),
+                    pageX + bounds.right * pageSize.getWidth(), pageY + bounds.bottom * pageSize.getHeight());
             if (mapped.contains(mappedX, mappedY)) {
-                pdfView.callbacks.callLinkHandler(new LinkTapEvent(x, y, mappedX, mappedY, mapped, link));
+                pdfView.callbacks.callLinkHandler(new LinkTapEvent(x, y, mappedX, mappedY, mapped, pageLinks.links.get(i)));
                 return true;
             }
-        }*/
+        }
         return false;
     }
 
@@ -175,7 +199,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
 
         int targetPage = 0;
         if (this.pdfView.getRealDisplayDualPageType() == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            targetPage = Math.max(0, Math.min(pdfView.pdfFile.getDualPageDisplays().size() - 1, startingPage + direction));
+            targetPage = Math.max(0, Math.min(pdfView.pdfFile.getPageCountForDualPage() - 1, startingPage + direction));
         } else {
             targetPage = Math.max(0, Math.min(pdfView.getPageCount() - 1, startingPage + direction));
         }
@@ -187,7 +211,7 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
 
     @Override
     public boolean onDoubleTap(MotionEvent e) {
-        if (!pdfView.isDoubletapEnabled()) {
+        if (!pdfView.isDoubletapEnabled() || pdfView.isOverviewMode()) {
             return false;
         }
 
@@ -234,6 +258,15 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
     @Override
     public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
         scrolling = true;
+        if (pdfView.isOverviewMode()) {
+            pdfView.moveOverviewRelativeTo(-distanceY);
+            pdfView.loadPages();
+            return true;
+        }
+        if (pdfView.isPinchPreviewActive()) {
+            pdfView.movePreviewRelativeTo(-distanceX, -distanceY);
+            return true;
+        }
         if (pdfView.isZooming() || pdfView.isSwipeEnabled()) {
             pdfView.moveRelativeTo(-distanceX, -distanceY);
         }
@@ -259,6 +292,11 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
 
     @Override
     public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+        if (pdfView.isOverviewMode()) {
+            animationManager.startFlingAnimation(0, (int) pdfView.getOverviewOffset(), 0, (int) velocityY,
+                    0, 0, (int) pdfView.getOverviewMinOffset(), 0);
+            return true;
+        }
         if (!pdfView.isSwipeEnabled()) {
             return false;
         }
@@ -316,29 +354,71 @@ class DragPinchManager implements GestureDetector.OnGestureListener, GestureDete
 
     @Override
     public boolean onScale(ScaleGestureDetector detector) {
+        if (pdfView.isOverviewMode()) {
+            scaleOverview(detector);
+            return true;
+        }
         float dr = detector.getScaleFactor();
-        float wantedZoom = pdfView.getZoom() * dr;
+        float currentZoom = pdfView.getZoom() * pdfView.getPinchPreviewScale();
+        float wantedZoom = currentZoom * dr;
         float minZoom = Math.min(MINIMUM_ZOOM, pdfView.getMinZoom());
-        float maxZoom = Math.min(MAXIMUM_ZOOM, pdfView.getMaxZoom());
+        // deep zoom replaces the max zoom only while it's on, double tap still zooms to the max zoom
+        float maxZoom = pdfView.isDeepZoom() ? DEEP_ZOOM_MAXIMUM_ZOOM : Math.min(MAXIMUM_ZOOM, pdfView.getMaxZoom());
+        if (wantedZoom < minZoom && pdfView.isOverviewOnPinch()) {
+            overviewPinchScale *= detector.getScaleFactor();
+            if (overviewPinchScale < 1 / Constants.OVERVIEW_PINCH_STEP) {
+                overviewPinchScale = 1;
+                pdfView.showOverview(Constants.OVERVIEW_DEFAULT_COLUMNS);
+                return true;
+            }
+        }
         if (wantedZoom < minZoom) {
-            dr = minZoom / pdfView.getZoom();
+            dr = minZoom / currentZoom;
         } else if (wantedZoom > maxZoom) {
-            dr = maxZoom / pdfView.getZoom();
+            dr = maxZoom / currentZoom;
+        }
+        if (pdfView.isPinchPreviewActive()) {
+            pdfView.zoomPreviewCenteredRelativeTo(dr, new PointF(detector.getFocusX(), detector.getFocusY()));
+        } else {
+            pdfView.zoomCenteredRelativeTo(dr, new PointF(detector.getFocusX(), detector.getFocusY()));
         }
-        pdfView.zoomCenteredRelativeTo(dr, new PointF(detector.getFocusX(), detector.getFocusY()));
-        pdfView.callbacks.callOnPageZoom(detector.getFocusX(), detector.getFocusY(), pdfView.getZoom(), dr);
+        pdfView.callbacks.callOnPageZoom(detector.getFocusX(), detector.getFocusY(), currentZoom * dr, dr);
         return true;
     }
 
+    /**
+     * Pinching out adds columns to the overview grid, pinching in removes them
+     * and finally closes the overview on the page under the focus point
+     */
+    private void scaleOverview(ScaleGestureDetector detector) {
+        overviewPinchScale *= detector.getScaleFactor();
+        PointF focus = new PointF(detector.getFocusX(), detector.getFocusY());
+        if (overviewPinchScale > Constants.OVERVIEW_PINCH_STEP) {
+            overviewPinchScale = 1;
+            pdfView.changeOverviewColumns(-1, focus);
+        } else if (overviewPinchScale < 1 / Constants.OVERVIEW_PINCH_STEP) {
+            overviewPinchScale = 1;
+            pdfView.changeOverviewColumns(1, focus);
+        }
+    }
+
     @Override
     public boolean onScaleBegin(ScaleGestureDetector detector) {
         scaling = true;
+        overviewPinchScale = 1;
+        if (pdfView.isPinchPreview() && !pdfView.isOverviewMode()) {
+            pdfView.startPinchPreview();
+        }
         return true;
     }
 
     @Override
     public void onScaleEnd(ScaleGestureDetector detector) {
-        pdfView.loadPages();
+        if (pdfView.isPinchPreviewActive()) {
+            pdfView.endPinchPreview(new PointF(detector.getFocusX(), detector.getFocusY()));
+        } else {
+            pdfView.loadPages();
+        }
         hideHandle();
         scaling = false;
     }
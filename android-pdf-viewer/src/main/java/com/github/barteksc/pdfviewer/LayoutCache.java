@@ -0,0 +1,156 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.github.barteksc.pdfviewer.source.FileSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps original page sizes of documents in the cache directory, so a reopened document
+ * is laid out without reading size of every page from pdfium.
+ * <p>
+ * Every document has one file named after the hash of its key. It holds format version,
+ * page count and then width and height of every document page, as big endian ints.
+ */
+class LayoutCache {
+
+    private static final String TAG = LayoutCache.class.getName();
+
+    private static final String DIRECTORY = "pdfviewer-layout";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+
+    LayoutCache(Context context) {
+        this.directory = new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    /**
+     * @param customKey key given in {@link PDFView.Configurator#layoutCacheKey(String)}, may be null
+     * @return key identifying the document, null if it cannot be identified
+     */
+    static String getKey(DocumentSource source, String customKey) {
+        if (customKey != null) {
+            return customKey;
+        }
+        if (source instanceof FileSource) {
+            File file = ((FileSource) source).getFile();
+            return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        }
+        return null;
+    }
+
+    /**
+     * @param pageCount number of pages of the opened document
+     * @return sizes of document pages, width and height of every page one after another,
+     * or null if they are not cached or the cached document has different number of pages
+     */
+    int[] read(String key, int pageCount) {
+        File file = getFile(key);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != FORMAT_VERSION || input.readInt() != pageCount) {
+                return null;
+            }
+            int[] sizes = new int[2 * pageCount];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = input.readInt();
+            }
+            return sizes;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read layout cache", e);
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * @param sizes width and height of every document page one after another
+     */
+    void write(String key, int[] sizes) {
+        File file = getFile(key);
+        if (file == null || (!directory.isDirectory() && !directory.mkdirs())) {
+            return;
+        }
+        // written aside and renamed, so a reader never sees a partial file
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(sizes.length / 2);
+            for (int size : sizes) {
+                output.writeInt(size);
+            }
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write layout cache", e);
+            close(output);
+            tempFile.delete();
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            Log.e(TAG, "Cannot hash layout cache key", e);
+            return null;
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.graphics.RectF;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import com.github.barteksc.pdfviewer.exception.PageRenderingException;
+import com.github.barteksc.pdfviewer.util.Constants;
+import com.shockwave.pdfium.PdfDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds pages the user is likely to jump to next: destinations of links on visible pages,
+ * start of the current chapter and of the next one from the document outline.
+ * <p>
+ * Links and outline are read on the rendering thread, after parts of the visible area.
+ * Links are kept per page with their bounds relative to the page, so link taps are checked
+ * on the UI thread without any native call.
+ */
+class LinkPrefetcher {
+
+    private static final String TAG = LinkPrefetcher.class.getName();
+
+    /**
+     * Size of the device area link bounds are mapped to, before they are made relative to the page
+     */
+    private static final int BOUNDS_MAPPING_SIZE = 1 << 16;
+
+    private final PDFView pdfView;
+
+    private final SparseArray<PageLinks> links = new SparseArray<>();
+
+    /**
+     * Links of a page with their bounds relative to the page, from 0 to 1
+     */
+    static class PageLinks {
+        final List<PdfDocument.Link> links;
+        /**
+         * Bounds of links at the same index, null if the link couldn't be mapped
+         */
+        final RectF[] bounds;
+
+        PageLinks(List<PdfDocument.Link> links, RectF[] bounds) {
+            this.links = links;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * Sorted user pages of outline entries, read once per document
+     */
+    private volatile int[] outlinePages;
+
+    LinkPrefetcher(PDFView pdfView) {
+        this.pdfView = pdfView;
+    }
+
+    /**
+     * Read links of given pages and find their destinations, called on the rendering thread.
+     * Links and outline point to pages of the document, they are mapped to user pages
+     *
+     * @param firstPage first visible user page
+     * @param lastPage  last visible user page
+     * @return user pages to prefetch, without the given ones, see {@link PDFView#prefetchPages(List)}
+     */
+    List<Integer> findTargets(int firstPage, int lastPage) {
+        PdfFile pdfFile = pdfView.pdfFile;
+        Set<Integer> targets = new LinkedHashSet<>();
+        if (pdfFile == null) {
+            return new ArrayList<>(targets);
+        }
+        for (int page = firstPage; page <= lastPage; page++) {
+            for (PdfDocument.Link link : readLinks(pdfFile, page).links) {
+                Integer destination = link.getDestPageIdx();
+                if (destination != null && (link.getUri() == null || link.getUri().isEmpty())) {
+                    int target = pdfFile.userPage(destination);
+                    if (target != -1) {
+                        targets.add(target);
+                    }
+                }
+            }
+        }
+
+        int[] outline = readOutline(pdfFile);
+        int next = Arrays.binarySearch(outline, lastPage + 1);
+        next = next >= 0 ? next : -next - 1;
+        if (next < outline.length) {
+            targets.add(outline[next]);
+        }
+        int current = Arrays.binarySearch(outline, firstPage);
+        current = current >= 0 ? current : -current - 2;
+        if (current >= 0) {
+            targets.add(outline[current]);
+        }
+
+        List<Integer> result = new ArrayList<>();
+        for (Integer target : targets) {
+            if ((target < firstPage || target > lastPage) && result.size() < Constants.LINK_PREFETCH_MAX_TARGETS) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    private PageLinks readLinks(PdfFile pdfFile, int page) {
+        PageLinks pageLinks;
+        synchronized (links) {
+            pageLinks = links.get(page);
+        }
+        if (pageLinks != null) {
+            return pageLinks;
+        }
+        try {
+            // links can be read from opened pages only
+            pdfFile.openPage(page);
+        } catch (PageRenderingException e) {
+            Log.e(TAG, "Cannot open page " + page, e);
+            return new PageLinks(new ArrayList<PdfDocument.Link>(), new RectF[0]);
+        }
+        List<PdfDocument.Link> pageLinkList = pdfFile.getPageLinks(page);
+        RectF[] bounds = new RectF[pageLinkList.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            RectF mapped = pdfFile.mapRectToDevice(page, 0, 0, BOUNDS_MAPPING_SIZE, BOUNDS_MAPPING_SIZE,
+                    pageLinkList.get(i).getBounds());
+            if (mapped != null) {
+                mapped.sort();
+                mapped.set(mapped.left / BOUNDS_MAPPING_SIZE, mapped.top / BOUNDS_MAPPING_SIZE,
+                        mapped.right / BOUNDS_MAPPING_SIZE, mapped.bottom / BOUNDS_MAPPING_SIZE);
+            }
+            bounds[i] = mapped;
+        }
+        pageLinks = new PageLinks(pageLinkList, bounds);
+        synchronized (links) {
+            links.put(page, pageLinks);
+        }
+        return pageLinks;
+    }
+
+    private int[] readOutline(PdfFile pdfFile) {
+        if (outlinePages == null) {
+            List<Integer> pages = new ArrayList<>();
+            addBookmarkPages(pdfFile.getBookmarks(), pages);
+            int count = 0;
+            int[] sorted = new int[pages.size()];
+            for (int page : pages) {
+                int userPage = pdfFile.userPage(page);
+                if (userPage != -1) {
+                    sorted[count++] = userPage;
+                }
+            }
+            sorted = Arrays.copyOf(sorted, count);
+            Arrays.sort(sorted);
+            outlinePages = sorted;
+        }
+        return outlinePages;
+    }
+
+    private void addBookmarkPages(List<PdfDocument.Bookmark> bookmarks, List<Integer> pages) {
+        for (PdfDocument.Bookmark bookmark : bookmarks) {
+            pages.add((int) bookmark.getPageIdx());
+            if (bookmark.hasChildren()) {
+                addBookmarkPages(bookmark.getChildren(), pages);
+            }
+        }
+    }
+
+    /**
+     * @return links of the page read by the prefetcher, null if they were not read yet
+     */
+    @Nullable
+    PageLinks getCachedLinks(int page) {
+        synchronized (links) {
+            return links.get(page);
+        }
+    }
+
+    void clear() {
+        synchronized (links) {
+            links.clear();
+        }
+        outlinePages = null;
+    }
+}
@@ -32,11 +32,14 @@ import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.widget.RelativeLayout;
 
+import com.github.barteksc.pdfviewer.core.PartCache;
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
 import com.github.barteksc.pdfviewer.link.DefaultLinkHandler;
 import com.github.barteksc.pdfviewer.link.LinkHandler;
@@ -51,7 +54,6 @@ import com.github.barteksc.pdfviewer.listener.OnPageScrollListener;
 import com.github.barteksc.pdfviewer.listener.OnPageZoomListener;
 import com.github.barteksc.pdfviewer.listener.OnRenderListener;
 import com.github.barteksc.pdfviewer.listener.OnTapListener;
-import com.github.barteksc.pdfviewer.model.DualPageDisplay;
 import com.github.barteksc.pdfviewer.model.PagePart;
 import com.github.barteksc.pdfviewer.scroll.ScrollHandle;
 import com.github.barteksc.pdfviewer.source.AssetSource;
@@ -117,11 +119,32 @@ public class PDFView extends RelativeLayout {
 
     private ScrollDir scrollDir = ScrollDir.NONE;
 
+    /**
+     * Smoothed scroll velocity along the swipe axis in pixels per millisecond,
+     * positive when scrolling in last page direction
+     */
+    private float scrollVelocity = 0;
+
+    /**
+     * Time of the last offset change, see {@link SystemClock#uptimeMillis()}
+     */
+    private long lastMoveTime = 0;
+
     /**
      * Rendered parts go to the cache manager
      */
     CacheManager cacheManager;
 
+    /**
+     * Shared bitmaps for rendered parts, used when {@link #isTileAtlasEnabled()} is true
+     */
+    TileAtlas tileAtlas;
+
+    /**
+     * Reads links of visible pages, used when {@link #isLinkPrefetch()} is true
+     */
+    LinkPrefetcher linkPrefetcher;
+
     /**
      * Animation manager manage all offset and zoom animation
      */
@@ -177,6 +200,27 @@ public class PDFView extends RelativeLayout {
      * The thread {@link #renderingHandler} will run on
      */
     private HandlerThread renderingHandlerThread;
+
+    /** Measures pages with estimated size, see {@link PdfFile#isLayoutEstimated()} */
+    private PageSizeScanner pageSizeScanner;
+
+    /** Thread of the page size scanner and layout calculation */
+    private HandlerThread layoutThread;
+
+    /** Calculates layout for a new view size or measured pages, see {@link #calculateLayoutInBackground(int, int, boolean)} */
+    private Handler layoutHandler;
+
+    /** Incremented with every layout calculation request, results of older requests are dropped */
+    private int layoutGeneration = 0;
+
+    /** True if current layout is outdated, for a different view size or estimated pages, and a new one is being calculated */
+    private boolean layoutPending = false;
+
+    /** True if the pending layout is only for measured pages, so position within the current page is kept */
+    private boolean layoutForMeasuredPages = false;
+
+    /** True if measuring waits for the pending layout, see {@link #onPagesMeasured(PdfFile, int, int[], int[])} */
+    private boolean measuringPaused = false;
     /**
      * Handler always waiting in the background and rendering tasks
      */
@@ -253,6 +297,107 @@ public class PDFView extends RelativeLayout {
      */
     private boolean renderDuringScale = false;
 
+    /**
+     * True if rendered parts should be kept in slots of shared atlas bitmaps
+     * False if every part should have its own bitmap
+     */
+    private boolean tileAtlasEnabled = false;
+
+    /**
+     * True if adjacent not cached parts of a page should be rendered with one pdfium call and sliced,
+     * regions are limited by {@link Constants#SINGLE_PASS_MAX_PIXELS} at the render zoom
+     */
+    private boolean singlePassRendering = false;
+
+    /**
+     * True if pages should be tiled as a quadtree, allowing zoom up to {@link Constants.Pinch#DEEP_ZOOM_MAXIMUM_ZOOM}
+     */
+    private boolean deepZoom = false;
+
+    /**
+     * True if pinch gesture should only scale already rendered parts with canvas matrix,
+     * parts for the final zoom are rendered when the gesture ends
+     */
+    private boolean pinchPreview = false;
+
+    /**
+     * True while pinch preview gesture is in progress
+     */
+    private boolean pinchPreviewActive = false;
+
+    /**
+     * Number of spreads ahead and behind the current one kept fully rendered
+     * in snap and fling reading mode, 0 to load parts intersecting the screen only
+     */
+    private int pagedRenderWindow = 0;
+
+    /**
+     * Transformation of the canvas during pinch preview, scale around the screen origin followed by translation
+     */
+    private float previewScale = 1;
+    private float previewTranslateX = 0;
+    private float previewTranslateY = 0;
+
+    /**
+     * Area of the screen in canvas coordinates, parts outside of it are not drawn
+     */
+    private final RectF visibleArea = new RectF();
+
+    /**
+     * True if pinching out at minimum zoom should open the overview grid
+     */
+    private boolean overviewOnPinch = false;
+
+    /**
+     * True if destinations of links on visible pages should be rendered ahead, see {@link LinkPrefetcher}
+     */
+    private boolean linkPrefetch = false;
+
+    /**
+     * True if only pages around the default page should be measured while loading, see {@link PdfFile#isLayoutEstimated()}
+     */
+    private boolean lazyLayout = false;
+
+    /**
+     * True if page sizes of opened documents should be kept in {@link LayoutCache}
+     */
+    private boolean layoutCacheEnabled = false;
+
+    /**
+     * Key of the document in {@link LayoutCache}, if it's not loaded from a file
+     */
+    private String layoutCacheKey = null;
+
+    LayoutCache layoutCache;
+
+    /**
+     * True while pages are shown as a grid of thumbnails, see {@link #showOverview(int)}
+     */
+    private boolean overviewMode = false;
+
+    /**
+     * Vertical offset of the overview grid, 0 or negative
+     */
+    private float overviewOffset = 0;
+
+    /**
+     * Space around every page of the overview grid, in pixels
+     */
+    private float overviewPadding = 0;
+
+    private final RectF overviewPageBounds = new RectF();
+
+    /**
+     * True while the scroll handle is dragged, see {@link #startScrubbing()}
+     */
+    private boolean scrubbing = false;
+
+    /**
+     * Pages intersecting the screen while scrubbing, their previews are drawn under rendered parts
+     */
+    private int scrubFirstPage = 0;
+    private int scrubLastPage = -1;
+
     /**
      * Antialiasing and bitmap filtering
      */
@@ -356,12 +501,17 @@ public class PDFView extends RelativeLayout {
 
     private void initPDFView(Context context) {
         renderingHandlerThread = new HandlerThread("PDF renderer");
+        layoutThread = new HandlerThread("PDF layout");
+        layoutCache = new LayoutCache(context);
 
         if (isInEditMode()) {
             return;
         }
 
         cacheManager = new CacheManager();
+        tileAtlas = new TileAtlas((int) Math.ceil(Constants.PART_SIZE), Constants.Cache.ATLAS_SLOTS_PER_SIDE,
+                Constants.Cache.CACHE_SIZE);
+        linkPrefetcher = new LinkPrefetcher(this);
         animationManager = new AnimationManager(this);
         dragPinchManager = new DragPinchManager(this, animationManager);
         pagesLoader = new PagesLoader(this);
@@ -405,21 +555,12 @@ public class PDFView extends RelativeLayout {
         if (pdfFile == null) {
             return;
         }
+        if (overviewMode) {
+            closeOverview(pdfFile.getSpreadPages(pdfFile.determineValidPageNumberFrom(page))[0]);
+        }
         //Log.d("YYY","Z page->"+page);
         page = pdfFile.determineValidPageNumberFrom(page);
-        float offset = page == 0 ? 0 : -pdfFile.getPageOffset(page, zoom, false);
-        //offset += pdfFile.getPageSpacing(page, getZoom()) / 2f;
-        //Log.d("XX1", "M1 offset = " + offset);
-        if (this.pdfFile.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            //DualPageDisplay display = pdfFile.getDualPageDisplays().get(page);
-            float space = (this.getWidth() - pdfFile.getPageLength(page, getZoom())) / 2;
-            //Log.d("XX1", "M2 offset = " + offset + " space:"+space );
-            if (space > 0) {
-                offset += space;
-            }
-        } else {
-            offset += pdfFile.getPageSpacing(page, getZoom()) / 2f;
-        }
+        float offset = getJumpOffset(page);
         //Log.d("XX1", "M3 offset = " + offset + " page =" + page);
         if (swipeVertical) {
             if (withAnimation) {
@@ -434,14 +575,43 @@ public class PDFView extends RelativeLayout {
                 moveTo(offset, currentYOffset);
             }
         }
-        showPage(page);
+        // animation loads parts of its destination itself
+        showPage(page, !withAnimation);
     }
 
     public void jumpTo(int page) {
         jumpTo(page, false);
     }
 
+    /**
+     * @param page valid page number
+     * @return offset along the swipe axis {@link #jumpTo(int)} moves to
+     */
+    private float getJumpOffset(int page) {
+        float offset = page == 0 ? 0 : -pdfFile.getPageOffset(page, zoom, false);
+        //offset += pdfFile.getPageSpacing(page, getZoom()) / 2f;
+        //Log.d("XX1", "M1 offset = " + offset);
+        if (this.pdfFile.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            //DualPageDisplay display = pdfFile.getDualPageDisplays().get(page);
+            float space = (this.getWidth() - pdfFile.getPageLength(page, getZoom())) / 2;
+            //Log.d("XX1", "M2 offset = " + offset + " space:"+space );
+            if (space > 0) {
+                offset += space;
+            }
+        } else {
+            offset += pdfFile.getPageSpacing(page, getZoom()) / 2f;
+        }
+        return offset;
+    }
+
     void showPage(int pageNb) {
+        showPage(pageNb, true);
+    }
+
+    /**
+     * @param loadPages false if parts were already loaded, e.g. ahead of an animation
+     */
+    private void showPage(int pageNb, boolean loadPages) {
         if (recycled) {
             return;
         }
@@ -452,7 +622,9 @@ public class PDFView extends RelativeLayout {
         currentPage = pageNb;
         currentPageJumpTo = pageNb;
 
-        loadPages();
+        if (loadPages) {
+            loadPages();
+        }
 
         //Log.d("XX", "currentPage: " + currentPage);
         if (scrollHandle != null && !documentFitsView()) {
@@ -561,6 +733,14 @@ public class PDFView extends RelativeLayout {
         if (renderingHandler != null) {
             renderingHandler.stop();
             renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+            renderingHandler.removeMessages(RenderingHandler.MSG_PREFETCH_LINKS);
+        }
+        if (pageSizeScanner != null) {
+            pageSizeScanner.stop();
+            pageSizeScanner.removeMessages(PageSizeScanner.MSG_MEASURE_PAGES);
+        }
+        if (layoutHandler != null) {
+            layoutHandler.removeCallbacksAndMessages(null);
         }
         if (decodingAsyncTask != null) {
             decodingAsyncTask.cancel(true);
@@ -568,6 +748,8 @@ public class PDFView extends RelativeLayout {
 
         // Clear caches
         cacheManager.recycle();
+        tileAtlas.recycle();
+        linkPrefetcher.clear();
 
         if (scrollHandle != null && isScrollHandleInit) {
             scrollHandle.destroyLayout();
@@ -579,10 +761,18 @@ public class PDFView extends RelativeLayout {
         }
 
         renderingHandler = null;
+        pageSizeScanner = null;
+        layoutHandler = null;
+        layoutPending = false;
+        layoutForMeasuredPages = false;
+        measuringPaused = false;
         scrollHandle = null;
         isScrollHandleInit = false;
         currentXOffset = currentYOffset = 0;
         zoom = 1f;
+        overviewMode = false;
+        overviewOffset = 0;
+        scrubbing = false;
         recycled = true;
         callbacks = new Callbacks();
         state = State.DEFAULT;
@@ -622,6 +812,10 @@ public class PDFView extends RelativeLayout {
             }
             renderingHandlerThread = null;
         }
+        if (layoutThread != null) {
+            layoutThread.quit();
+            layoutThread = null;
+        }
     }
 
     @Override
@@ -634,6 +828,57 @@ public class PDFView extends RelativeLayout {
             return;
         }
 
+        animationManager.stopAll();
+        calculateLayoutInBackground(w, h, false);
+        redraw();
+    }
+
+    /**
+     * Calculate layout for given view size on the layout thread. Size changes are debounced,
+     * so bursts of them, like resizing in multi-window mode, calculate it once.
+     * Until it's ready, current layout is drawn scaled to the new size.
+     * A pending size change wins over measured pages, its layout includes them anyway
+     *
+     * @param measuredPages true if only sizes of measured pages changed, not the view size
+     */
+    private void calculateLayoutInBackground(final int width, final int height, boolean measuredPages) {
+        final PdfFile pdfFile = this.pdfFile;
+        final int generation = ++layoutGeneration;
+        layoutForMeasuredPages = measuredPages && (!layoutPending || layoutForMeasuredPages);
+        layoutPending = true;
+        layoutHandler.removeCallbacksAndMessages(null);
+        layoutHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                final PdfFile.Layout layout = pdfFile.calculateLayout(new Size(width, height));
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLayoutCalculated(pdfFile, layout, generation);
+                    }
+                });
+            }
+        }, layoutForMeasuredPages ? 0 : Constants.LAYOUT_DEBOUNCE_DELAY);
+    }
+
+    private void onLayoutCalculated(PdfFile pdfFile, PdfFile.Layout layout, int generation) {
+        if (pdfFile != this.pdfFile || generation != layoutGeneration) {
+            return;
+        }
+        layoutPending = false;
+        if (measuringPaused) {
+            measuringPaused = false;
+            measureNextPages();
+        }
+        if (layoutForMeasuredPages) {
+            layoutForMeasuredPages = false;
+            onMeasuredLayoutCalculated(pdfFile, layout);
+            return;
+        }
+        Size oldSize = pdfFile.getViewSize();
+        int oldw = oldSize.getWidth();
+        int oldh = oldSize.getHeight();
+
         // calculates the position of the point which in the center of view relative to big strip
         float centerPointInStripXOffset = -currentXOffset + oldw * 0.5f;
         float centerPointInStripYOffset = -currentYOffset + oldh * 0.5f;
@@ -650,7 +895,16 @@ public class PDFView extends RelativeLayout {
         }
 
         animationManager.stopAll();
-        pdfFile.recalculatePageSizes(new Size(w, h));
+        pdfFile.setLayout(layout);
+        int w = pdfFile.getViewSize().getWidth();
+        int h = pdfFile.getViewSize().getHeight();
+
+        if (overviewMode) {
+            pdfFile.calculateOverviewLayout(pdfFile.getOverviewColumns(), w);
+            moveOverviewTo(overviewOffset);
+            loadOverview();
+            return;
+        }
 
         if (swipeVertical) {
             currentXOffset = -relativeCenterPointInStripXOffset * pdfFile.getMaxPageWidth() + w * 0.5f;
@@ -749,6 +1003,10 @@ public class PDFView extends RelativeLayout {
             canvas.setDrawFilter(antialiasFilter);
         }
 
+        if (canvas.isHardwareAccelerated()) {
+            tileAtlas.setMaxBitmapSize(Math.min(canvas.getMaximumBitmapWidth(), canvas.getMaximumBitmapHeight()));
+        }
+
         Drawable bg = getBackground();
         if (bg == null) {
             canvas.drawColor(nightMode ? Color.BLACK : Color.WHITE);
@@ -764,6 +1022,30 @@ public class PDFView extends RelativeLayout {
             return;
         }
 
+        if (overviewMode) {
+            drawOverview(canvas);
+            return;
+        }
+
+        int saveCount = -1;
+        if (pinchPreviewActive) {
+            saveCount = canvas.save();
+            canvas.translate(previewTranslateX, previewTranslateY);
+            canvas.scale(previewScale, previewScale);
+            visibleArea.set(-previewTranslateX / previewScale, -previewTranslateY / previewScale,
+                    (getWidth() - previewTranslateX) / previewScale, (getHeight() - previewTranslateY) / previewScale);
+        } else if (layoutPending) {
+            // current layout is for the old view size, scale it until the new one is ready
+            Size layoutSize = pdfFile.getViewSize();
+            float scale = swipeVertical ? (float) getWidth() / layoutSize.getWidth()
+                    : (float) getHeight() / layoutSize.getHeight();
+            saveCount = canvas.save();
+            canvas.scale(scale, scale);
+            visibleArea.set(0, 0, getWidth() / scale, getHeight() / scale);
+        } else {
+            visibleArea.set(0, 0, getWidth(), getHeight());
+        }
+
         // Moves the canvas before drawing any element
         float currentXOffset = this.currentXOffset;
         float currentYOffset = this.currentYOffset;
@@ -774,6 +1056,15 @@ public class PDFView extends RelativeLayout {
             drawPartPlaceHolder(canvas, part);
         }
 
+        if (scrubbing) {
+            for (int page = scrubFirstPage; page <= scrubLastPage; page++) {
+                PagePart preview = cacheManager.getOverviewThumbnail(page);
+                if (preview != null) {
+                    drawPart(canvas, preview);
+                }
+            }
+        }
+
         // Draws thumbnails
         //int j = 0;
         for (PagePart part : cacheManager.getThumbnails()) {
@@ -801,6 +1092,9 @@ public class PDFView extends RelativeLayout {
 
         // Restores the canvas position
         canvas.translate(-currentXOffset, -currentYOffset);
+        if (saveCount != -1) {
+            canvas.restoreToCount(saveCount);
+        }
     }
 
     private void drawWithListener(Canvas canvas, int page, OnDrawListener listener) {
@@ -838,16 +1132,17 @@ public class PDFView extends RelativeLayout {
         // Move to the target page
         float localTranslationX = 0;
         float localTranslationY = 0;
-        SizeF size = pdfFile.getPageSize(part.getPage());
+        float pageWidth = pdfFile.getPageWidth(part.getPage());
+        float pageHeight = pdfFile.getPageHeight(part.getPage());
 
         if (swipeVertical) {
             localTranslationY = pdfFile.getPageOffset(part.getPage(), zoom, false);
             float maxWidth = pdfFile.getMaxPageWidth();
-            localTranslationX = toCurrentScale(maxWidth - size.getWidth()) / 2;
+            localTranslationX = toCurrentScale(maxWidth - pageWidth) / 2;
         } else {
             localTranslationX = pdfFile.getPageOffsetForLocalTranslationX(part.getPage(), zoom);
             float maxHeight = pdfFile.getMaxPageHeight(currentPageJumpTo);
-            localTranslationY = toCurrentScale(maxHeight - size.getHeight()) / 2;
+            localTranslationY = toCurrentScale(maxHeight - pageHeight) / 2;
         }
         //Log.d("XXX","localTranslationX ="+localTranslationX + "   "+part.getPage());
         //localTranslationY = 889;
@@ -859,10 +1154,10 @@ public class PDFView extends RelativeLayout {
 
          */
 
-        float offsetX = toCurrentScale(pageRelativeBounds.left * size.getWidth());
-        float offsetY = toCurrentScale(pageRelativeBounds.top * size.getHeight());
-        float width = toCurrentScale(pageRelativeBounds.width() * size.getWidth());
-        float height = toCurrentScale(pageRelativeBounds.height() * size.getHeight());
+        float offsetX = toCurrentScale(pageRelativeBounds.left * pageWidth);
+        float offsetY = toCurrentScale(pageRelativeBounds.top * pageHeight);
+        float width = toCurrentScale(pageRelativeBounds.width() * pageWidth);
+        float height = toCurrentScale(pageRelativeBounds.height() * pageHeight);
 
         // If we use float values for this rectangle, there will be
         // a possible gap between page parts, especially when
@@ -875,8 +1170,8 @@ public class PDFView extends RelativeLayout {
         // Check if bitmap is in the screen
         float translationX = currentXOffset + localTranslationX;
         float translationY = currentYOffset + localTranslationY;
-        if (translationX + dstRect.left >= getWidth() || translationX + dstRect.right <= 0 ||
-                translationY + dstRect.top >= getHeight() || translationY + dstRect.bottom <= 0) {
+        if (translationX + dstRect.left >= visibleArea.right || translationX + dstRect.right <= visibleArea.left ||
+                translationY + dstRect.top >= visibleArea.bottom || translationY + dstRect.bottom <= visibleArea.top) {
             canvas.translate(-localTranslationX, -localTranslationY);
             return;
         }
@@ -909,16 +1204,17 @@ public class PDFView extends RelativeLayout {
         // Move to the target page
         float localTranslationX = 0;
         float localTranslationY = 0;
-        SizeF size = pdfFile.getPageSize(part.getPage());
+        float pageWidth = pdfFile.getPageWidth(part.getPage());
+        float pageHeight = pdfFile.getPageHeight(part.getPage());
 
         if (swipeVertical) {
             localTranslationY = pdfFile.getPageOffset(part.getPage(), zoom, false);
             float maxWidth = pdfFile.getMaxPageWidth();
-            localTranslationX = toCurrentScale(maxWidth - size.getWidth()) / 2;
+            localTranslationX = toCurrentScale(maxWidth - pageWidth) / 2;
         } else {
             localTranslationX = pdfFile.getPageOffsetForLocalTranslationX(part.getPage(), zoom);
             float maxHeight = pdfFile.getMaxPageHeight(currentPageJumpTo);
-            localTranslationY = toCurrentScale(maxHeight - size.getHeight()) / 2;
+            localTranslationY = toCurrentScale(maxHeight - pageHeight) / 2;
         }
         //if (part.getPage() == 0) {
         //    Log.d("XX", "debug = " + debug + " part.getPage() =" + part.getPage());
@@ -927,13 +1223,16 @@ public class PDFView extends RelativeLayout {
         //canvas.translate(localTranslationX, localTranslationY);
         canvas.translate(localTranslationX, localTranslationY);
 
-        Rect srcRect = new Rect(0, 0, renderedBitmap.getWidth(),
-                renderedBitmap.getHeight());
+        Rect srcRect = part.getSourceRect();
+        if (srcRect == null) {
+            srcRect = new Rect(0, 0, renderedBitmap.getWidth(),
+                    renderedBitmap.getHeight());
+        }
 
-        float offsetX = toCurrentScale(pageRelativeBounds.left * size.getWidth());
-        float offsetY = toCurrentScale(pageRelativeBounds.top * size.getHeight());
-        float width = toCurrentScale(pageRelativeBounds.width() * size.getWidth());
-        float height = toCurrentScale(pageRelativeBounds.height() * size.getHeight());
+        float offsetX = toCurrentScale(pageRelativeBounds.left * pageWidth);
+        float offsetY = toCurrentScale(pageRelativeBounds.top * pageHeight);
+        float width = toCurrentScale(pageRelativeBounds.width() * pageWidth);
+        float height = toCurrentScale(pageRelativeBounds.height() * pageHeight);
 
         // If we use float values for this rectangle, there will be
         // a possible gap between page parts, especially when
@@ -945,8 +1244,8 @@ public class PDFView extends RelativeLayout {
         // Check if bitmap is in the screen
         float translationX = currentXOffset + localTranslationX;
         float translationY = currentYOffset + localTranslationY;
-        if (translationX + dstRect.left >= getWidth() || translationX + dstRect.right <= 0 ||
-                translationY + dstRect.top >= getHeight() || translationY + dstRect.bottom <= 0) {
+        if (translationX + dstRect.left >= visibleArea.right || translationX + dstRect.right <= visibleArea.left ||
+                translationY + dstRect.top >= visibleArea.bottom || translationY + dstRect.bottom <= visibleArea.top) {
             canvas.translate(-localTranslationX, -localTranslationY);
             return;
         }
@@ -969,19 +1268,96 @@ public class PDFView extends RelativeLayout {
      * the current page displayed
      */
     public void loadPages() {
+        loadPages(null);
+    }
+
+    /**
+     * @param focus point on the screen parts should be loaded around, null to load them in grid order
+     * @see #loadPages()
+     */
+    void loadPages(PointF focus) {
         if (pdfFile == null || renderingHandler == null) {
             return;
         }
+        if (overviewMode) {
+            loadOverview();
+            return;
+        }
+        if (scrubbing) {
+            loadScrubPreviews();
+            return;
+        }
 
         // Cancel all current tasks
         renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
-        cacheManager.makeANewSet();
 
-        pagesLoader.loadPages();
+        pagesLoader.loadPages(focus);
+        if (linkPrefetch) {
+            int[] pages = getVisiblePageRange();
+            renderingHandler.addLinkPrefetchTask(pages[0], pages[1]);
+        }
         redraw();
 
     }
 
+    /**
+     * Load thumbnails and parts of the first viewport of pages the user may jump to next,
+     * after parts of the visible area. Viewport is the one {@link #jumpTo(int)} would show at current zoom
+     *
+     * @param pages user pages, in dual page mode the spreads showing them are prefetched
+     */
+    void prefetchPages(List<Integer> pages) {
+        if (!linkPrefetch || pdfFile == null || renderingHandler == null
+                || overviewMode || scrubbing || pinchPreviewActive) {
+            return;
+        }
+        boolean dualPage = pdfFile.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE;
+        for (int page : pages) {
+            // jump offsets are indexed by spreads in dual page mode
+            int target = dualPage ? pdfFile.getSpreadOfPage(page) : pdfFile.determineValidPageNumberFrom(page);
+            if (target == -1) {
+                continue;
+            }
+            float offset = getJumpOffset(target);
+            float offsetX = limitXOffset(swipeVertical ? currentXOffset : offset, zoom);
+            float offsetY = limitYOffset(swipeVertical ? offset : currentYOffset, zoom);
+            pagesLoader.loadViewport(offsetX, offsetY, zoom, Constants.LINK_PREFETCH_MAX_PARTS);
+        }
+    }
+
+    /**
+     * Start rendering parts of the viewport the zoom animation ends at,
+     * so they are ready, or nearly ready, when the animation stops
+     *
+     * @param zoom  target zoom
+     * @param pivot the point on the screen that stays at its place while zooming
+     */
+    void loadPagesAhead(float zoom, PointF pivot) {
+        float dzoom = zoom / this.zoom;
+        loadPagesAhead(currentXOffset * dzoom + pivot.x - pivot.x * dzoom,
+                currentYOffset * dzoom + pivot.y - pivot.y * dzoom, zoom);
+    }
+
+    /**
+     * Start rendering parts and thumbnails of the viewport an animation ends at, ahead of everything else.
+     * Animation updates use {@link #updatePageByOffset()}, so pages crossed on the way are not rendered.
+     * Parts on the screen are kept whatever their level, the animation end or cancel loads pages again
+     *
+     * @param offsetX target X offset, limited the same way as in {@link #moveTo(float, float)}
+     * @param offsetY target Y offset
+     * @param zoom    target zoom
+     */
+    void loadPagesAhead(float offsetX, float offsetY, float zoom) {
+        if (pdfFile == null || renderingHandler == null) {
+            return;
+        }
+        offsetX = limitXOffset(offsetX, zoom);
+        offsetY = limitYOffset(offsetY, zoom);
+
+        renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+        pagesLoader.loadPagesAhead(offsetX, offsetY, zoom);
+    }
+
     public int getDisplayPageNumber(int page) {
         return -1;
     }
@@ -994,7 +1370,7 @@ public class PDFView extends RelativeLayout {
         //Log.d("XX1","D1 this.defaultPage =" + this.defaultPage);
         if (pdfFile.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
             //เนื่องจาก this.defaultPage เริ่มต้นมาจะเป็นของแบบหน้าเดี่ยวๆเสมอ ถ้าเปิดมาเป็นหน้าคู่เราจะปรับให้้ไปตามจุดจริงตามแบบหน้าคู่
-            this.defaultPage = DualPageDisplay.findIndexByPage(pdfFile.getDualPageDisplays(), this.defaultPage);
+            this.defaultPage = pdfFile.getSpreadOfPage(this.defaultPage);
             //Log.d("XX1","D2 this.defaultPage =" + this.defaultPage);
         }
 
@@ -1023,6 +1399,89 @@ public class PDFView extends RelativeLayout {
 
 
         jumpTo(defaultPage, false);
+
+        if (!layoutThread.isAlive()) {
+            layoutThread.start();
+        }
+        layoutHandler = new Handler(layoutThread.getLooper());
+        if (pdfFile.isLayoutEstimated()) {
+            pageSizeScanner = new PageSizeScanner(layoutThread.getLooper(), this);
+            pageSizeScanner.start();
+            measureNextPages();
+        }
+    }
+
+    private void measureNextPages() {
+        int startPage = pdfFile.getNextUnmeasuredPage();
+        if (startPage != -1) {
+            pageSizeScanner.addMeasurePagesTask(pdfFile, startPage,
+                    pdfFile.getUnmeasuredPagesCount(startPage, Constants.LAZY_LAYOUT_CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Called when sizes of pages with estimated size were measured in background. If they differ,
+     * layout is recalculated on the layout thread, see {@link #onMeasuredLayoutCalculated(PdfFile, PdfFile.Layout)}.
+     * Measuring waits for any pending layout, so page sizes don't change under the calculation
+     * and every chunk doesn't postpone it
+     */
+    void onPagesMeasured(PdfFile pdfFile, int startPage, int[] widths, int[] heights) {
+        if (pdfFile != this.pdfFile || pageSizeScanner == null) {
+            return;
+        }
+        if (pdfFile.setMeasuredPageSizes(startPage, widths, heights)) {
+            // a layout being calculated may have read sizes of these pages before they were set
+            calculateLayoutInBackground(getWidth(), getHeight(), true);
+        }
+        if (!pdfFile.isLayoutEstimated() && pdfFile.getLayoutCacheKey() != null) {
+            final String layoutCacheKey = pdfFile.getLayoutCacheKey();
+            final int[] pageSizes = pdfFile.getDocumentPageSizes();
+            if (pageSizes != null) {
+                pageSizeScanner.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        layoutCache.write(layoutCacheKey, pageSizes);
+                    }
+                });
+            }
+        }
+        if (layoutPending) {
+            measuringPaused = true;
+        } else {
+            measureNextPages();
+        }
+    }
+
+    /**
+     * Apply layout recalculated for measured pages, keeping the same point of the current page
+     * at the start of the view
+     */
+    private void onMeasuredLayoutCalculated(PdfFile pdfFile, PdfFile.Layout layout) {
+        float offset = swipeVertical ? currentYOffset : currentXOffset;
+        float pageOffset = pdfFile.getPageOffset(currentPage, zoom, false);
+        float pageLength = pdfFile.getPageLength(currentPage, zoom);
+        float positionInPage = pageLength > 0 ? (-offset - pageOffset) / pageLength : 0;
+
+        pdfFile.setLayout(layout);
+
+        if (overviewMode) {
+            pdfFile.calculateOverviewLayout(pdfFile.getOverviewColumns(), getWidth());
+            moveOverviewTo(overviewOffset);
+            loadOverview();
+            return;
+        }
+        float newOffset = -(pdfFile.getPageOffset(currentPage, zoom, false)
+                + positionInPage * pdfFile.getPageLength(currentPage, zoom));
+        if (Math.abs(newOffset - offset) >= 1) {
+            // running animations move to offsets of the old layout
+            animationManager.stopAll();
+        }
+        if (swipeVertical) {
+            moveTo(currentXOffset, newOffset);
+        } else {
+            moveTo(newOffset, currentYOffset);
+        }
+        loadPageByOffset();
     }
 
     void loadError(Throwable t) {
@@ -1049,23 +1508,44 @@ public class PDFView extends RelativeLayout {
      * @param part The created PagePart.
      */
     public void onBitmapRendered(PagePart part) {
+        onBitmapRendered(part, PartCache.NO_SET);
+    }
+
+    /**
+     * @param set set of {@link CacheManager} the part was requested by
+     */
+    void onBitmapRendered(PagePart part, int set) {
         // when it is first rendered part
         if (state == State.LOADED) {
             state = State.SHOWN;
             callbacks.callOnRender(pdfFile.getPagesCount());
         }
 
-        if (part.isPlaceHolder()) {
+        if (part.isOverview()) {
+            if (overviewMode || scrubbing) {
+                cacheManager.cacheOverviewThumbnail(part);
+            } else {
+                part.recycle();
+            }
+        } else if (part.isPlaceHolder()) {
             cacheManager.cachePlaceHolders(part);
         } else if (part.isThumbnail()) {
             cacheManager.cacheThumbnail(part);
             //cacheManager.cachePart(part);
         } else {
-            cacheManager.cachePart(part);
+            cacheManager.cachePart(part, set);
         }
         redraw();
     }
 
+    /**
+     * Called when parts requested by given set are dropped or failed to render
+     */
+    void onPartsSkipped(int set, int count) {
+        cacheManager.skipParts(set, count);
+        redraw();
+    }
+
     public void moveTo(float offsetX, float offsetY) {
         moveTo(offsetX, offsetY, true);
     }
@@ -1079,32 +1559,13 @@ public class PDFView extends RelativeLayout {
      * @param moveHandle whether to move scroll handle or not
      */
     public void moveTo(float offsetX, float offsetY, boolean moveHandle) {
+        if (overviewMode) {
+            moveOverviewTo(offsetY);
+            return;
+        }
+        offsetX = limitXOffset(offsetX, zoom);
+        offsetY = limitYOffset(offsetY, zoom);
         if (swipeVertical) {
-            //Log.d("XX", "M offsetX " + offsetX);
-            // Check X offset
-            float scaledPageWidth = toCurrentScale(pdfFile.getMaxPageWidth());
-            if (scaledPageWidth < getWidth()) {
-                offsetX = getWidth() / 2 - scaledPageWidth / 2;
-            } else {
-                if (offsetX > 0) {
-                    offsetX = 0;
-                } else if (offsetX + scaledPageWidth < getWidth()) {
-                    offsetX = getWidth() - scaledPageWidth;
-                }
-            }
-
-            // Check Y offset
-            float contentHeight = pdfFile.getDocLen(zoom);
-            if (contentHeight < getHeight()) { // whole document height visible on screen
-                offsetY = (getHeight() - contentHeight) / 2;
-            } else {
-                if (offsetY > 0) { // top visible
-                    offsetY = 0;
-                } else if (offsetY + contentHeight < getHeight()) { // bottom visible
-                    offsetY = -contentHeight + getHeight();
-                }
-            }
-
             if (offsetY < currentYOffset) {
                 scrollDir = ScrollDir.END;
             } else if (offsetY > currentYOffset) {
@@ -1113,36 +1574,6 @@ public class PDFView extends RelativeLayout {
                 scrollDir = ScrollDir.NONE;
             }
         } else {
-            //Log.d("XX", "N offsetX " + offsetX);
-            // Check Y offset
-            float h = pdfFile.getMaxPageHeight(currentPageJumpTo);
-            float scaledPageHeight = toCurrentScale(h);
-            //Log.d("YYY", "currentPageJumpTo: "+currentPageJumpTo + " scaledPageHeight: "+scaledPageHeight + " offsetX: "+offsetX + " scrollDir:"+scrollDir);
-            if (scaledPageHeight < getHeight()) {
-                offsetY = getHeight() / 2 - scaledPageHeight / 2;
-            } else {
-                if (offsetY > 0) {
-                    offsetY = 0;
-                } else if (offsetY + scaledPageHeight < getHeight()) {
-                    offsetY = getHeight() - scaledPageHeight;
-                }
-            }
-
-            // Check X offset
-            float contentWidth = pdfFile.getDocLen(zoom);
-            if (contentWidth < getWidth()) { // whole document width visible on screen
-                offsetX = (getWidth() - contentWidth) / 2;
-               // Log.d("XX", "A offsetX " + offsetX);
-            } else {
-                if (offsetX > 0) { // left visible
-                    offsetX = 0;
-                    //Log.d("XX", "B offsetX " + offsetX);
-                } else if (offsetX + contentWidth < getWidth()) { // right visible
-                    offsetX = -contentWidth + getWidth();
-                    //Log.d("XX", "C offsetX " + offsetX);
-                }
-            }
-
             if (offsetX < currentXOffset) {
                 scrollDir = ScrollDir.END;
             } else if (offsetX > currentXOffset) {
@@ -1151,6 +1582,7 @@ public class PDFView extends RelativeLayout {
                 scrollDir = ScrollDir.NONE;
             }
         }
+        updateScrollVelocity(swipeVertical ? currentYOffset - offsetY : currentXOffset - offsetX);
         //Log.d("XX", "offsetX " + offsetX);
         currentXOffset = offsetX;
         currentYOffset = offsetY;
@@ -1164,34 +1596,143 @@ public class PDFView extends RelativeLayout {
         redraw();
     }
 
-    void loadPageByOffset() {
-        if (0 == pdfFile.getPagesCount()) {
+    private void updateScrollVelocity(float distance) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - lastMoveTime;
+        lastMoveTime = now;
+        if (elapsed <= 0) {
             return;
         }
-
-        float offset, screenCenter;
-        if (swipeVertical) {
-            offset = currentYOffset;
-            screenCenter = ((float) getHeight()) / 2;
-        } else {
-            offset = currentXOffset;
-            screenCenter = ((float) getWidth()) / 2;
+        if (elapsed > Constants.VELOCITY_TIMEOUT) {
+            scrollVelocity = 0;
         }
-        //offset = 0;
-        int page = pdfFile.getPageAtOffset(-(offset - screenCenter), zoom);
+        scrollVelocity += (distance / elapsed - scrollVelocity) * Constants.VELOCITY_SMOOTHING;
+    }
 
-        if (page >= 0 && page <= pdfFile.getPagesCount() - 1 && page != getCurrentPage()) {
-            showPage(page);
+    /**
+     * @return recent scroll velocity along the swipe axis in pixels per millisecond, positive when
+     * scrolling in last page direction, 0 if the document is not moving
+     */
+    float getScrollVelocity() {
+        if (SystemClock.uptimeMillis() - lastMoveTime > Constants.VELOCITY_TIMEOUT) {
+            return 0;
+        }
+        return scrollVelocity;
+    }
+
+    /**
+     * Check X offset, so the screen does not go outside of the big strip at given zoom
+     */
+    private float limitXOffset(float offsetX, float zoom) {
+        if (swipeVertical) {
+            float scaledPageWidth = pdfFile.getMaxPageWidth() * zoom;
+            if (scaledPageWidth < getWidth()) {
+                return getWidth() / 2 - scaledPageWidth / 2;
+            }
+            if (offsetX > 0) {
+                return 0;
+            } else if (offsetX + scaledPageWidth < getWidth()) {
+                return getWidth() - scaledPageWidth;
+            }
+            return offsetX;
+        }
+        float contentWidth = pdfFile.getDocLen(zoom);
+        if (contentWidth < getWidth()) { // whole document width visible on screen
+            return (getWidth() - contentWidth) / 2;
+        }
+        if (offsetX > 0) { // left visible
+            return 0;
+        } else if (offsetX + contentWidth < getWidth()) { // right visible
+            return -contentWidth + getWidth();
+        }
+        return offsetX;
+    }
+
+    /**
+     * Check Y offset, so the screen does not go outside of the big strip at given zoom
+     */
+    private float limitYOffset(float offsetY, float zoom) {
+        if (!swipeVertical) {
+            float scaledPageHeight = pdfFile.getMaxPageHeight(currentPageJumpTo) * zoom;
+            if (scaledPageHeight < getHeight()) {
+                return getHeight() / 2 - scaledPageHeight / 2;
+            }
+            if (offsetY > 0) {
+                return 0;
+            } else if (offsetY + scaledPageHeight < getHeight()) {
+                return getHeight() - scaledPageHeight;
+            }
+            return offsetY;
+        }
+        float contentHeight = pdfFile.getDocLen(zoom);
+        if (contentHeight < getHeight()) { // whole document height visible on screen
+            return (getHeight() - contentHeight) / 2;
+        }
+        if (offsetY > 0) { // top visible
+            return 0;
+        } else if (offsetY + contentHeight < getHeight()) { // bottom visible
+            return -contentHeight + getHeight();
+        }
+        return offsetY;
+    }
+
+    void loadPageByOffset() {
+        if (0 == pdfFile.getPagesCount()) {
+            return;
+        }
+        if (overviewMode) {
+            loadOverview();
+            return;
+        }
+        if (scrubbing) {
+            updatePageByOffset();
+            loadScrubPreviews();
+            return;
+        }
+
+        int page = getPageAtScreenCenter();
+
+        if (page >= 0 && page <= pdfFile.getPagesCount() - 1 && page != getCurrentPage()) {
+            showPage(page);
         } else {
             loadPages();
         }
     }
 
+    /**
+     * Same as {@link #loadPageByOffset()}, but only changes current page without loading parts.
+     * Used by animations which loaded their destination with {@link #loadPagesAhead(float, float, float)}
+     */
+    void updatePageByOffset() {
+        if (0 == pdfFile.getPagesCount() || overviewMode) {
+            return;
+        }
+
+        int page = getPageAtScreenCenter();
+
+        if (page >= 0 && page <= pdfFile.getPagesCount() - 1 && page != getCurrentPage()) {
+            showPage(page, false);
+        }
+    }
+
+    private int getPageAtScreenCenter() {
+        float offset, screenCenter;
+        if (swipeVertical) {
+            offset = currentYOffset;
+            screenCenter = ((float) getHeight()) / 2;
+        } else {
+            offset = currentXOffset;
+            screenCenter = ((float) getWidth()) / 2;
+        }
+        //offset = 0;
+        return pdfFile.getPageAtOffset(-(offset - screenCenter), zoom);
+    }
+
     /**
      * Animate to the nearest snapping position for the current SnapPolicy
      */
     public void performPageSnap() {
-        if (!pageSnap || pdfFile == null || pdfFile.getPagesCount() == 0) {
+        if (!pageSnap || overviewMode || pdfFile == null || pdfFile.getPagesCount() == 0) {
             return;
         }
         int centerPage = findFocusPage(currentXOffset, currentYOffset);
@@ -1269,7 +1810,7 @@ public class PDFView extends RelativeLayout {
             return 0;
         } else if (currOffset < -pdfFile.getDocLen(zoom) + length + 1) {
             if (this.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-                return pdfFile.getDualPageDisplays().size() - 1;
+                return pdfFile.getPageCountForDualPage() - 1;
             }
             return pdfFile.getPagesCount() - 1;
         }
@@ -1335,6 +1876,305 @@ public class PDFView extends RelativeLayout {
         zoomCenteredTo(zoom * dzoom, pivot);
     }
 
+    /**
+     * Start pinch preview, until {@link #endPinchPreview(PointF)} zoom and offsets are not changed,
+     * already rendered parts are only transformed while drawing
+     */
+    void startPinchPreview() {
+        pinchPreviewActive = true;
+        previewScale = 1;
+        previewTranslateX = 0;
+        previewTranslateY = 0;
+    }
+
+    boolean isPinchPreviewActive() {
+        return pinchPreviewActive;
+    }
+
+    /**
+     * @return scale of the pinch preview, 1 if there is no preview in progress
+     */
+    float getPinchPreviewScale() {
+        return pinchPreviewActive ? previewScale : 1;
+    }
+
+    /**
+     * Scale pinch preview relatively to a pivot point, which stays at its place on the screen
+     */
+    void zoomPreviewCenteredRelativeTo(float dzoom, PointF pivot) {
+        previewScale *= dzoom;
+        previewTranslateX = dzoom * (previewTranslateX - pivot.x) + pivot.x;
+        previewTranslateY = dzoom * (previewTranslateY - pivot.y) + pivot.y;
+        redraw();
+    }
+
+    void movePreviewRelativeTo(float dx, float dy) {
+        previewTranslateX += dx;
+        previewTranslateY += dy;
+        redraw();
+    }
+
+    /**
+     * Apply pinch preview transformation to zoom and offsets, then load parts nearest the focus point first
+     */
+    void endPinchPreview(PointF focus) {
+        if (!pinchPreviewActive) {
+            return;
+        }
+        pinchPreviewActive = false;
+        zoomTo(zoom * previewScale);
+        moveTo(currentXOffset * previewScale + previewTranslateX, currentYOffset * previewScale + previewTranslateY);
+        previewScale = 1;
+        previewTranslateX = 0;
+        previewTranslateY = 0;
+        loadPages(focus);
+    }
+
+    /**
+     * Start scrubbing, called by the scroll handle when it's grabbed. Until {@link #stopScrubbing()}
+     * page parts are not rendered, only low resolution previews of whole pages, which are kept
+     * in the same index as thumbnails of the overview grid
+     */
+    public void startScrubbing() {
+        if (pdfFile == null || overviewMode || scrubbing) {
+            return;
+        }
+        scrubbing = true;
+        loadScrubPreviews();
+    }
+
+    /**
+     * Stop scrubbing, called by the scroll handle when it's released, and render parts of the visible area
+     */
+    public void stopScrubbing() {
+        if (!scrubbing) {
+            return;
+        }
+        scrubbing = false;
+        loadPages();
+    }
+
+    public boolean isScrubbing() {
+        return scrubbing;
+    }
+
+    /**
+     * @return first and last user page of spreads intersecting the screen. Spreads are single pages
+     * unless dual pages are shown, their pages may be in any order, like reversed for RTL
+     */
+    private int[] getVisiblePageRange() {
+        float offset = swipeVertical ? currentYOffset : currentXOffset;
+        float screenLength = swipeVertical ? getHeight() : getWidth();
+        int firstSpread = pdfFile.getSpreadAtOffset(-offset, zoom);
+        int lastSpread = pdfFile.getSpreadAtOffset(-offset + screenLength - 1, zoom);
+        int firstPage = Integer.MAX_VALUE;
+        int lastPage = -1;
+        for (int spread = Math.min(firstSpread, lastSpread); spread <= Math.max(firstSpread, lastSpread); spread++) {
+            for (int page : pdfFile.getSpreadPages(spread)) {
+                firstPage = Math.min(firstPage, page);
+                lastPage = Math.max(lastPage, page);
+            }
+        }
+        return new int[]{firstPage, lastPage};
+    }
+
+    /**
+     * Request previews of pages intersecting the screen which are not in the thumbnail index yet
+     */
+    private void loadScrubPreviews() {
+        if (pdfFile == null || renderingHandler == null) {
+            return;
+        }
+        renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+
+        int[] pages = getVisiblePageRange();
+        scrubFirstPage = pages[0];
+        scrubLastPage = pages[1];
+        for (int page = scrubFirstPage; page <= scrubLastPage; page++) {
+            SizeF size = pdfFile.getPageSize(page);
+            float width = size.getWidth() * Constants.SCRUB_THUMBNAIL_RATIO;
+            float height = size.getHeight() * Constants.SCRUB_THUMBNAIL_RATIO;
+            if (Math.round(width) > 0 && !cacheManager.containsOverviewThumbnail(page, Math.round(width))) {
+                renderingHandler.addOverviewRenderingTask(page, width, height, annotationRendering);
+            }
+        }
+        redraw();
+    }
+
+    /**
+     * Show pages as a grid of whole page thumbnails, rendered at the size of their cells,
+     * for a quick navigation in long documents. Row of the current page is shown at the top.
+     * Parts are not rendered until {@link #exitOverview(int)}
+     *
+     * @param columns number of pages in a row
+     */
+    public void showOverview(int columns) {
+        if (pdfFile == null || state != State.SHOWN) {
+            return;
+        }
+        animationManager.stopAll();
+        pinchPreviewActive = false;
+        previewScale = 1;
+        previewTranslateX = 0;
+        previewTranslateY = 0;
+
+        int page = pdfFile.getSpreadPages(currentPage)[0];
+        overviewMode = true;
+        overviewPadding = Util.getDP(getContext(), Constants.OVERVIEW_PADDING);
+        pdfFile.calculateOverviewLayout(MathUtils.limit(columns, Constants.OVERVIEW_MIN_COLUMNS,
+                Constants.OVERVIEW_MAX_COLUMNS), getWidth());
+        moveOverviewTo(-(page / pdfFile.getOverviewColumns()) * pdfFile.getOverviewCellHeight());
+        loadOverview();
+    }
+
+    /**
+     * Close the overview grid and show given page at minimum zoom
+     *
+     * @param page page index
+     */
+    public void exitOverview(int page) {
+        if (!overviewMode) {
+            return;
+        }
+        closeOverview(page);
+        if (pdfFile.getRealDisplayDualPageType() == Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            page = Math.max(0, pdfFile.getSpreadOfPage(page));
+        }
+        jumpTo(page);
+    }
+
+    /**
+     * Leave overview mode. Thumbnails of the page and its neighbours cover them until their parts are rendered
+     */
+    private void closeOverview(int page) {
+        overviewMode = false;
+        animationManager.stopAll();
+        cacheManager.recycleOverview(page - 1, page + 1);
+        zoomTo(minZoom);
+    }
+
+    public boolean isOverviewMode() {
+        return overviewMode;
+    }
+
+    /**
+     * Add or remove columns of the overview grid, keeping the page under the focus point in place.
+     * Going below {@link Constants#OVERVIEW_MIN_COLUMNS} closes the overview on that page
+     */
+    void changeOverviewColumns(int delta, PointF focus) {
+        int columns = pdfFile.getOverviewColumns();
+        float cellHeight = pdfFile.getOverviewCellHeight();
+        int page = getOverviewPageAt(focus.x, focus.y);
+        if (page < 0) {
+            page = Math.min(pdfFile.getPagesCount() - 1, (int) (-overviewOffset / cellHeight) * columns);
+        }
+        if (columns + delta < Constants.OVERVIEW_MIN_COLUMNS) {
+            exitOverview(page);
+            return;
+        }
+        int newColumns = Math.min(columns + delta, Constants.OVERVIEW_MAX_COLUMNS);
+        if (newColumns == columns) {
+            return;
+        }
+        float rowFraction = (focus.y - overviewOffset - (page / columns) * cellHeight) / cellHeight;
+
+        pdfFile.calculateOverviewLayout(newColumns, getWidth());
+        float newCellHeight = pdfFile.getOverviewCellHeight();
+        moveOverviewTo(focus.y - ((page / newColumns) + rowFraction) * newCellHeight);
+        loadOverview();
+    }
+
+    /**
+     * @return page at given point of the screen in overview mode, -1 if there is no page
+     */
+    public int getOverviewPageAt(float x, float y) {
+        if (!overviewMode || pdfFile == null) {
+            return -1;
+        }
+        return pdfFile.getOverviewPageAt(x, y - overviewOffset);
+    }
+
+    float getOverviewOffset() {
+        return overviewOffset;
+    }
+
+    /**
+     * @return offset of the overview grid when its end is at the bottom of the screen
+     */
+    float getOverviewMinOffset() {
+        return Math.min(0, getHeight() - pdfFile.getOverviewLength());
+    }
+
+    void moveOverviewRelativeTo(float dy) {
+        moveOverviewTo(overviewOffset + dy);
+    }
+
+    private void moveOverviewTo(float offset) {
+        overviewOffset = MathUtils.limit(offset, getOverviewMinOffset(), 0);
+        redraw();
+    }
+
+    /**
+     * Request thumbnails of the visible rows of the overview grid, then of a few rows around them,
+     * if they are missing or much smaller than their cells
+     */
+    private void loadOverview() {
+        if (pdfFile == null || renderingHandler == null) {
+            return;
+        }
+        renderingHandler.removeMessages(RenderingHandler.MSG_RENDER_TASK);
+
+        int columns = pdfFile.getOverviewColumns();
+        float cellHeight = pdfFile.getOverviewCellHeight();
+        if (cellHeight <= 0) {
+            return;
+        }
+        int firstRow = (int) (-overviewOffset / cellHeight);
+        int lastRow = (int) ((-overviewOffset + getHeight()) / cellHeight);
+        loadOverviewRows(firstRow, lastRow, columns);
+        loadOverviewRows(lastRow + 1, lastRow + Constants.OVERVIEW_PRELOAD_ROWS, columns);
+        loadOverviewRows(firstRow - Constants.OVERVIEW_PRELOAD_ROWS, firstRow - 1, columns);
+        redraw();
+    }
+
+    private void loadOverviewRows(int firstRow, int lastRow, int columns) {
+        int firstPage = Math.max(0, firstRow * columns);
+        int lastPage = Math.min(pdfFile.getPagesCount() - 1, (lastRow + 1) * columns - 1);
+        for (int page = firstPage; page <= lastPage; page++) {
+            pdfFile.getOverviewPageBounds(page, overviewPadding, overviewPageBounds);
+            int width = Math.round(overviewPageBounds.width());
+            if (width > 0 && !cacheManager.containsOverviewThumbnail(page, width)) {
+                renderingHandler.addOverviewRenderingTask(page, width, overviewPageBounds.height(), annotationRendering);
+            }
+        }
+    }
+
+    /**
+     * Draw visible pages of the overview grid, pages without thumbnail are drawn as placeholders
+     */
+    private void drawOverview(Canvas canvas) {
+        int columns = pdfFile.getOverviewColumns();
+        float cellHeight = pdfFile.getOverviewCellHeight();
+        if (cellHeight <= 0) {
+            return;
+        }
+        int firstPage = (int) (-overviewOffset / cellHeight) * columns;
+        int lastPage = Math.min(pdfFile.getPagesCount() - 1,
+                ((int) ((-overviewOffset + getHeight()) / cellHeight) + 1) * columns - 1);
+
+        canvas.translate(0, overviewOffset);
+        for (int page = firstPage; page <= lastPage; page++) {
+            pdfFile.getOverviewPageBounds(page, overviewPadding, overviewPageBounds);
+            PagePart part = cacheManager.getOverviewThumbnail(page);
+            if (part == null || part.getRenderedBitmap().isRecycled()) {
+                canvas.drawRect(overviewPageBounds, placeHoldPaint);
+            } else {
+                canvas.drawBitmap(part.getRenderedBitmap(), null, overviewPageBounds, paint);
+            }
+        }
+        canvas.translate(0, -overviewOffset);
+    }
+
     /**
      * Checks if whole document can be displayed on screen, doesn't include zoom
      *
@@ -1397,6 +2237,10 @@ public class PDFView extends RelativeLayout {
         this.defaultPage = defaultPage;
     }
 
+    int getDefaultPage() {
+        return defaultPage;
+    }
+
     public void resetZoom() {
         zoomTo(minZoom);
     }
@@ -1483,6 +2327,86 @@ public class PDFView extends RelativeLayout {
         this.renderDuringScale = renderDuringScale;
     }
 
+    private void setTileAtlas(boolean tileAtlasEnabled) {
+        this.tileAtlasEnabled = tileAtlasEnabled;
+    }
+
+    public boolean isTileAtlasEnabled() {
+        return tileAtlasEnabled;
+    }
+
+    private void setSinglePassRendering(boolean singlePassRendering) {
+        this.singlePassRendering = singlePassRendering;
+    }
+
+    public boolean isSinglePassRendering() {
+        return singlePassRendering;
+    }
+
+    private void setDeepZoom(boolean deepZoom) {
+        this.deepZoom = deepZoom;
+    }
+
+    public boolean isDeepZoom() {
+        return deepZoom;
+    }
+
+    private void setPinchPreview(boolean pinchPreview) {
+        this.pinchPreview = pinchPreview;
+    }
+
+    public boolean isPinchPreview() {
+        return pinchPreview;
+    }
+
+    private void setPagedRenderWindow(int pagedRenderWindow) {
+        this.pagedRenderWindow = pagedRenderWindow;
+    }
+
+    public int getPagedRenderWindow() {
+        return pagedRenderWindow;
+    }
+
+    private void setOverviewOnPinch(boolean overviewOnPinch) {
+        this.overviewOnPinch = overviewOnPinch;
+    }
+
+    public boolean isOverviewOnPinch() {
+        return overviewOnPinch;
+    }
+
+    private void setLinkPrefetch(boolean linkPrefetch) {
+        this.linkPrefetch = linkPrefetch;
+    }
+
+    public boolean isLinkPrefetch() {
+        return linkPrefetch;
+    }
+
+    private void setLazyLayout(boolean lazyLayout) {
+        this.lazyLayout = lazyLayout;
+    }
+
+    public boolean isLazyLayout() {
+        return lazyLayout;
+    }
+
+    private void setLayoutCacheEnabled(boolean layoutCacheEnabled) {
+        this.layoutCacheEnabled = layoutCacheEnabled;
+    }
+
+    public boolean isLayoutCacheEnabled() {
+        return layoutCacheEnabled;
+    }
+
+    private void setLayoutCacheKey(String layoutCacheKey) {
+        this.layoutCacheKey = layoutCacheKey;
+    }
+
+    public String getLayoutCacheKey() {
+        return layoutCacheKey;
+    }
+
     public boolean isAntialiasing() {
         return enableAntialiasing;
     }
@@ -1663,6 +2587,26 @@ public class PDFView extends RelativeLayout {
 
         private boolean antialiasing = true;
 
+        private boolean tileAtlas = false;
+
+        private boolean singlePassRendering = false;
+
+        private boolean deepZoom = false;
+
+        private boolean pinchPreview = false;
+
+        private int pagedRenderWindow = 0;
+
+        private boolean overviewOnPinch = false;
+
+        private boolean linkPrefetch = false;
+
+        private boolean lazyLayout = false;
+
+        private boolean layoutCache = false;
+
+        private String layoutCacheKey = null;
+
         private int spacing = 0;
 
         private boolean autoSpacing = false;
@@ -1798,6 +2742,60 @@ public class PDFView extends RelativeLayout {
             return this;
         }
 
+        public Configurator tileAtlas(boolean tileAtlas) {
+            this.tileAtlas = tileAtlas;
+            return this;
+        }
+
+        public Configurator singlePassRendering(boolean singlePassRendering) {
+            this.singlePassRendering = singlePassRendering;
+            return this;
+        }
+
+        public Configurator deepZoom(boolean deepZoom) {
+            this.deepZoom = deepZoom;
+            return this;
+        }
+
+        public Configurator pinchPreview(boolean pinchPreview) {
+            this.pinchPreview = pinchPreview;
+            return this;
+        }
+
+        public Configurator pagedRenderWindow(int pagedRenderWindow) {
+            this.pagedRenderWindow = pagedRenderWindow;
+            return this;
+        }
+
+        public Configurator overviewOnPinch(boolean overviewOnPinch) {
+            this.overviewOnPinch = overviewOnPinch;
+            return this;
+        }
+
+        public Configurator linkPrefetch(boolean linkPrefetch) {
+            this.linkPrefetch = linkPrefetch;
+            return this;
+        }
+
+        public Configurator lazyLayout(boolean lazyLayout) {
+            this.lazyLayout = lazyLayout;
+            return this;
+        }
+
+        public Configurator layoutCache(boolean layoutCache) {
+            this.layoutCache = layoutCache;
+            return this;
+        }
+
+        /**
+         * Identify the document in the layout cache, required if it's not loaded from a file.
+         * Use a different key when content of the document changes
+         */
+        public Configurator layoutCacheKey(String layoutCacheKey) {
+            this.layoutCacheKey = layoutCacheKey;
+            return this;
+        }
+
         public Configurator spacing(int spacing) {
             this.spacing = spacing;
             return this;
@@ -1892,6 +2890,16 @@ public class PDFView extends RelativeLayout {
             PDFView.this.enableAnnotationRendering(annotationRendering);
             PDFView.this.setScrollHandle(scrollHandle);
             PDFView.this.enableAntialiasing(antialiasing);
+            PDFView.this.setTileAtlas(tileAtlas);
+            PDFView.this.setSinglePassRendering(singlePassRendering);
+            PDFView.this.setDeepZoom(deepZoom);
+            PDFView.this.setPinchPreview(pinchPreview);
+            PDFView.this.setPagedRenderWindow(pagedRenderWindow);
+            PDFView.this.setOverviewOnPinch(overviewOnPinch);
+            PDFView.this.setLinkPrefetch(linkPrefetch);
+            PDFView.this.setLazyLayout(lazyLayout);
+            PDFView.this.setLayoutCacheEnabled(layoutCache);
+            PDFView.this.setLayoutCacheKey(layoutCacheKey);
             PDFView.this.setSpacing(spacing);
             PDFView.this.setAutoSpacing(autoSpacing);
             PDFView.this.setPageFitPolicy(pageFitPolicy);
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import com.shockwave.pdfium.util.Size;
+
+/**
+ * A {@link Handler} on its own thread, measuring pages which size is estimated,
+ * see {@link PdfFile#isLayoutEstimated()}.
+ * <p>
+ * PdfiumCore guards every native call with one global lock, so reading sizes from several
+ * threads, even with separate document handles, would not run in parallel. A single thread
+ * taking the lock page by page keeps measuring while pages are rendered, and the rendering
+ * thread never waits for more than one page size.
+ */
+class PageSizeScanner extends Handler {
+
+    /**
+     * {@link Message#what} of a request to measure consecutive pages
+     */
+    static final int MSG_MEASURE_PAGES = 1;
+
+    private PDFView pdfView;
+
+    private volatile boolean running = false;
+
+    PageSizeScanner(Looper looper, PDFView pdfView) {
+        super(looper);
+        this.pdfView = pdfView;
+    }
+
+    /**
+     * Read sizes of given pages of the document and pass them to the view
+     */
+    void addMeasurePagesTask(PdfFile pdfFile, int startPage, int count) {
+        Message msg = obtainMessage(MSG_MEASURE_PAGES, startPage, count, pdfFile);
+        sendMessage(msg);
+    }
+
+    @Override
+    public void handleMessage(Message message) {
+        final PdfFile pdfFile = (PdfFile) message.obj;
+        final int startPage = message.arg1;
+        final int[] widths = new int[message.arg2];
+        final int[] heights = new int[message.arg2];
+        for (int i = 0; i < widths.length; i++) {
+            // checked page by page, the view may be recycled while the chunk is measured
+            Size pageSize = running ? pdfFile.measurePageSize(startPage + i) : null;
+            if (pageSize == null) {
+                return;
+            }
+            widths[i] = pageSize.getWidth();
+            heights[i] = pageSize.getHeight();
+        }
+        pdfView.post(new Runnable() {
+            @Override
+            public void run() {
+                pdfView.onPagesMeasured(pdfFile, startPage, widths, heights);
+            }
+        });
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    void start() {
+        running = true;
+    }
+}
@@ -15,14 +15,19 @@
  */
 package com.github.barteksc.pdfviewer;
 
+import android.graphics.PointF;
 import android.graphics.RectF;
 import android.util.Log;
 
+import com.github.barteksc.pdfviewer.core.PartCache;
+import com.github.barteksc.pdfviewer.core.TileGrid;
 import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.MathUtils;
 import com.github.barteksc.pdfviewer.util.Util;
-import com.shockwave.pdfium.util.SizeF;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -35,61 +40,86 @@ class PagesLoader {
     private int cacheOrder;
     private float xOffset;
     private float yOffset;
+    /**
+     * Offsets and zoom of the viewport parts are loaded for, not necessarily the current one
+     */
+    private float currentXOffset;
+    private float currentYOffset;
+    private float zoom;
     private float pageRelativePartWidth;
     private float pageRelativePartHeight;
     private float partRenderWidth;
     private float partRenderHeight;
+    /**
+     * Zoom of the discrete level nearest to the current zoom, parts grid is calculated for it
+     */
+    private float renderZoom;
+    private int renderLevel;
+    /**
+     * Number of parts of current level sent to rendering
+     */
+    private int pendingParts;
+    /**
+     * Set of {@link CacheManager} parts are requested by, {@link PartCache#NO_SET} for prefetched viewports
+     */
+    private int set;
     private final RectF thumbnailRect = new RectF(0, 0, 1, 1);
+    /**
+     * Left, top, width and height of the last cell, see {@link TileGrid#cellBounds}
+     */
+    private final float[] cellBounds = new float[4];
+    /**
+     * Point on the screen parts should be loaded around, null to load them in grid order
+     */
+    private PointF focus;
     private final int preloadOffset;
 
-    private class Holder {
-        int row;
-        int col;
-
-        @Override
-        public String toString() {
-            return "Holder{" +
-                    "row=" + row +
-                    ", col=" + col +
-                    '}';
-        }
-    }
-
     private class RenderRange {
         int page;
-        GridSize gridSize;
-        Holder leftTop;
-        Holder rightBottom;
-
-        RenderRange() {
-            this.page = 0;
-            this.gridSize = new GridSize();
-            this.leftTop = new Holder();
-            this.rightBottom = new Holder();
-        }
+        TileGrid.PageGrid grid = new TileGrid.PageGrid();
 
         @Override
         public String toString() {
             return "RenderRange{" +
                     "page=" + page +
-                    ", gridSize=" + gridSize +
-                    ", leftTop=" + leftTop +
-                    ", rightBottom=" + rightBottom +
+                    ", rows=" + grid.firstRow + ".." + grid.lastRow +
+                    ", cols=" + grid.firstCol + ".." + grid.lastCol +
                     '}';
         }
     }
 
-    private class GridSize {
-        int rows;
-        int cols;
+    private class Cell {
+        int page;
+        RectF bounds;
+        float renderWidth;
+        float renderHeight;
+        /**
+         * Center of the cell on the screen
+         */
+        float x;
+        float y;
+        /**
+         * Sort key, cells are loaded nearest first
+         */
+        float distance;
+    }
 
+    private final Comparator<Cell> distanceComparator = new Comparator<Cell>() {
         @Override
-        public String toString() {
-            return "GridSize{" +
-                    "rows=" + rows +
-                    ", cols=" + cols +
-                    '}';
+        public int compare(Cell cell1, Cell cell2) {
+            return Float.compare(cell1.distance, cell2.distance);
         }
+    };
+
+    /**
+     * Not cached cells of adjacent rows spanning the same columns, rendered by one task
+     */
+    private class SliceGroup {
+        int firstCol;
+        int lastCol;
+        RectF region;
+        List<RectF> slices = new ArrayList<>();
+        List<Integer> cacheOrders = new ArrayList<>();
     }
 
     PagesLoader(PDFView pdfView) {
@@ -97,24 +127,24 @@ class PagesLoader {
         this.preloadOffset = Util.getDP(pdfView.getContext(), PRELOAD_OFFSET);
     }
 
-    private void getPageColsRows(GridSize grid, int pageIndex) {
-        SizeF size = pdfView.pdfFile.getPageSize(pageIndex);
-        float ratioX = 1f / size.getWidth();
-        float ratioY = 1f / size.getHeight();
-        final float partHeight = (Constants.PART_SIZE * ratioY) / pdfView.getZoom();
-        final float partWidth = (Constants.PART_SIZE * ratioX) / pdfView.getZoom();
-        grid.rows = MathUtils.ceil(1f / partHeight);
-        grid.cols = MathUtils.ceil(1f / partWidth);
+    /**
+     * Plan grid of a page at the render zoom, the range covers the whole page
+     */
+    private void planGrid(TileGrid.PageGrid grid, int pageIndex) {
+        grid.plan(pdfView.pdfFile.getPageWidth(pageIndex), pdfView.pdfFile.getPageHeight(pageIndex),
+                renderZoom, Constants.PART_SIZE, pdfView.isDeepZoom());
     }
 
-    private void calculatePartSize(GridSize grid) {
-        pageRelativePartWidth = 1f / (float) grid.cols;
-        pageRelativePartHeight = 1f / (float) grid.rows;
-        partRenderWidth = Constants.PART_SIZE / pageRelativePartWidth;
-        partRenderHeight = Constants.PART_SIZE / pageRelativePartHeight;
+    /**
+     * Use size of parts of given grid for the cells loaded next
+     */
+    private void calculatePartSize(TileGrid.PageGrid grid) {
+        pageRelativePartWidth = grid.relativePartWidth;
+        pageRelativePartHeight = grid.relativePartHeight;
+        partRenderWidth = grid.renderWidth;
+        partRenderHeight = grid.renderHeight;
     }
 
-
     /**
      * calculate the render range of each page
      */
@@ -132,8 +162,8 @@ class PagesLoader {
         int firstPage = 0; //pdfView.pdfFile.getPageAtOffset(offsetFirst, pdfView.getZoom());
         int lastPage = 0;//pdfView.pdfFile.getPageAtOffset(offsetLast, pdfView.getZoom());
         if (pdfView.pdfFile.getRealDisplayDualPageType() == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            int[] pagesStart = pdfView.pdfFile.getPageAtOffsetForDualPage(offsetFirst, pdfView.getZoom());
-            int[] pagesEnd = pdfView.pdfFile.getPageAtOffsetForDualPage(offsetLast, pdfView.getZoom());
+            int[] pagesStart = pdfView.pdfFile.getPageAtOffsetForDualPage(offsetFirst, zoom);
+            int[] pagesEnd = pdfView.pdfFile.getPageAtOffsetForDualPage(offsetLast, zoom);
             firstPage = pagesStart[0];
             lastPage = pagesStart[1];
             if (lastPage < pagesEnd[0]) {
@@ -143,8 +173,8 @@ class PagesLoader {
                 lastPage = pagesEnd[1];
             }
         } else {
-            firstPage = pdfView.pdfFile.getPageAtOffset(offsetFirst, pdfView.getZoom());
-            lastPage = pdfView.pdfFile.getPageAtOffset(offsetLast, pdfView.getZoom());
+            firstPage = pdfView.pdfFile.getPageAtOffset(offsetFirst, zoom);
+            lastPage = pdfView.pdfFile.getPageAtOffset(offsetLast, zoom);
         }
         //int pageCount = lastPage - firstPage + 1;
         //Log.d("XX", "firstPage :" + firstPage + " lastPage:" + lastPage + "  offsetFirst:" + offsetFirst + " offsetLast:" + offsetLast);
@@ -156,64 +186,6 @@ class PagesLoader {
             RenderRange range = new RenderRange();
             range.page = page;
 
-            float pageFirstXOffset, pageFirstYOffset, pageLastXOffset, pageLastYOffset;
-            /*
-            if (page == firstPage) {
-                pageFirstXOffset = fixedFirstXOffset;
-                pageFirstYOffset = fixedFirstYOffset;
-                if (pageCount == 1) {
-                    pageLastXOffset = fixedLastXOffset;
-                    pageLastYOffset = fixedLastYOffset;
-                } else {
-                    float pageOffset = pdfView.pdfFile.getPageOffset(page, pdfView.getZoom());
-                    SizeF pageSize = pdfView.pdfFile.getScaledPageSize(page, pdfView.getZoom());
-                    if (pdfView.isSwipeVertical()) {
-                        pageLastXOffset = fixedLastXOffset;
-                        pageLastYOffset = pageOffset + pageSize.getHeight();
-                    } else {
-                        pageLastYOffset = fixedLastYOffset;
-                        pageLastXOffset = pageOffset + pageSize.getWidth();
-                    }
-                }
-            } else if (page == lastPage) {
-                float pageOffset = pdfView.pdfFile.getPageOffset(page, pdfView.getZoom());
-
-                if (pdfView.isSwipeVertical()) {
-                    pageFirstXOffset = fixedFirstXOffset;
-                    pageFirstYOffset = pageOffset;
-                } else {
-                    pageFirstYOffset = fixedFirstYOffset;
-                    pageFirstXOffset = pageOffset;
-                }
-
-                pageLastXOffset = fixedLastXOffset;
-                pageLastYOffset = fixedLastYOffset;
-
-            } else {*/
-            float pageOffset = pdfView.pdfFile.getPageOffset(page, pdfView.getZoom(),true);
-            SizeF pageSize = pdfView.pdfFile.getScaledPageSize(page, pdfView.getZoom());
-            if (pdfView.isSwipeVertical()) {
-                pageFirstXOffset = fixedFirstXOffset;
-                pageFirstYOffset = pageOffset;
-
-                pageLastXOffset = fixedLastXOffset;
-                pageLastYOffset = pageOffset + pageSize.getHeight();
-            } else {
-                pageFirstXOffset = pageOffset;
-                pageFirstYOffset = fixedFirstYOffset;
-
-                pageLastXOffset = pageOffset + pageSize.getWidth();
-                pageLastYOffset = fixedLastYOffset;
-            }
-            //}
-
-
-            getPageColsRows(range.gridSize, range.page); // get the page's grid size that rows and cols
-            SizeF scaledPageSize = pdfView.pdfFile.getScaledPageSize(range.page, pdfView.getZoom());
-            float rowHeight = scaledPageSize.getHeight() / range.gridSize.rows;
-            float colWidth = scaledPageSize.getWidth() / range.gridSize.cols;
-
-
             // get the page offset int the whole file
             // ---------------------------------------
             // |            |           |            |
@@ -221,35 +193,118 @@ class PagesLoader {
             // |            |           |            |
             // |            |           |            |
             // ---------------------------------------
-            float secondaryOffset = pdfView.pdfFile.getSecondaryPageOffset(page, pdfView.getZoom());
+            float secondaryOffset = pdfView.pdfFile.getSecondaryPageOffset(page, zoom);
 
-            // calculate the row,col of the point in the leftTop and rightBottom
+            float pageOffset = pdfView.pdfFile.getPageOffset(page, zoom, true);
+
+            // the page's grid, clipped to the visible area, so deep zoom levels with many rows
+            // don't queue cells of the whole page before the ones on the screen
+            planGrid(range.grid, range.page);
+            float scaledPageWidth = pdfView.pdfFile.getPageWidth(page) * zoom;
+            float scaledPageHeight = pdfView.pdfFile.getPageHeight(page) * zoom;
             if (pdfView.isSwipeVertical()) {
-                range.leftTop.row = MathUtils.floor(Math.abs(pageFirstYOffset - pdfView.pdfFile.getPageOffset(range.page, pdfView.getZoom(),true)) / rowHeight);
-                range.leftTop.col = MathUtils.floor(MathUtils.min(pageFirstXOffset - secondaryOffset, 0) / colWidth);
-                range.rightBottom.row = MathUtils.ceil(Math.abs(pageLastYOffset - pdfView.pdfFile.getPageOffset(range.page, pdfView.getZoom(),true)) / rowHeight);
-                range.rightBottom.col = MathUtils.floor(MathUtils.min(pageLastXOffset - secondaryOffset, 0) / colWidth);
+                range.grid.setVisibleRange(scaledPageWidth, scaledPageHeight,
+                        fixedFirstXOffset - secondaryOffset, fixedFirstYOffset - pageOffset,
+                        fixedLastXOffset - secondaryOffset, fixedLastYOffset - pageOffset);
             } else {
-                range.leftTop.col = MathUtils.floor(Math.abs(pageFirstXOffset - pdfView.pdfFile.getPageOffset(range.page, pdfView.getZoom(),true)) / colWidth);
-                range.leftTop.row = MathUtils.floor(MathUtils.min(pageFirstYOffset - Math.abs(secondaryOffset), 0) / rowHeight);
-                range.rightBottom.col = MathUtils.floor(Math.abs(pageLastXOffset - pdfView.pdfFile.getPageOffset(range.page, pdfView.getZoom(),true)) / colWidth);
-                range.rightBottom.row = MathUtils.floor(MathUtils.min(pageLastYOffset - secondaryOffset, 0) / rowHeight);
+                range.grid.setVisibleRange(scaledPageWidth, scaledPageHeight,
+                        fixedFirstXOffset - pageOffset, fixedFirstYOffset - secondaryOffset,
+                        fixedLastXOffset - pageOffset, fixedLastYOffset - secondaryOffset);
             }
 
-
             renderRanges.add(range);
         }
 
         return renderRanges;
     }
 
-    private void loadVisible() {
+    /**
+     * Paged rendering is used in snap and fling reading mode when the document is not zoomed in,
+     * whole spreads are the unit of loading instead of the screen area
+     */
+    private boolean isPagedRendering() {
+        return pdfView.getPagedRenderWindow() > 0 && pdfView.isPageSnap() && pdfView.isPageFlingEnabled()
+                && zoom <= pdfView.getMinZoom();
+    }
+
+    /**
+     * Load whole pages of the spread in the middle of the screen, then of the spreads
+     * around it, nearest first, up to {@link PDFView#getPagedRenderWindow()} in both directions.
+     * Passive parts of pages outside of the window are recycled
+     */
+    private void loadSpreads() {
+        PdfFile pdfFile = pdfView.pdfFile;
+        int spreadCount = pdfFile.getSpreadCount();
+        float screenCenter = pdfView.isSwipeVertical()
+                ? yOffset + pdfView.getHeight() / 2f
+                : xOffset + pdfView.getWidth() / 2f;
+        int current = pdfFile.getSpreadAtOffset(screenCenter, zoom);
+        int window = pdfView.getPagedRenderWindow();
+        int firstSpread = Math.max(0, current - window);
+        int lastSpread = Math.min(spreadCount - 1, current + window);
+
         int parts = 0;
+        for (int distance = 0; distance <= window && parts < CACHE_SIZE; distance++) {
+            if (current + distance <= lastSpread) {
+                parts += loadSpread(current + distance, CACHE_SIZE - parts);
+            }
+            if (distance > 0 && current - distance >= firstSpread && parts < CACHE_SIZE) {
+                parts += loadSpread(current - distance, CACHE_SIZE - parts);
+            }
+        }
+
+        int[] firstPages = pdfFile.getSpreadPages(firstSpread);
+        int[] lastPages = pdfFile.getSpreadPages(lastSpread);
+        pdfView.cacheManager.recycleOutside(firstPages[0], lastPages[lastPages.length - 1]);
+    }
+
+    private int loadSpread(int spread, int nbOfPartsLoadable) {
+        int loaded = 0;
+        TileGrid.PageGrid grid = new TileGrid.PageGrid();
+        for (int page : pdfView.pdfFile.getSpreadPages(spread)) {
+            if (loaded >= nbOfPartsLoadable) {
+                break;
+            }
+            loadThumbnail(page);
+            planGrid(grid, page);
+            calculatePartSize(grid);
+            loaded += loadPage(page, grid.firstRow, grid.lastRow, grid.firstCol, grid.lastCol, nbOfPartsLoadable - loaded);
+        }
+        return loaded;
+    }
+
+    private void loadVisible() {
+        if (isPagedRendering()) {
+            loadSpreads();
+            return;
+        }
+        int parts;
         float scaledPreloadOffset = preloadOffset;
-        float firstXOffset = -xOffset + scaledPreloadOffset;
-        float lastXOffset = -xOffset - pdfView.getWidth() - scaledPreloadOffset;
-        float firstYOffset = -yOffset + scaledPreloadOffset;
-        float lastYOffset = -yOffset - pdfView.getHeight() - scaledPreloadOffset;
+
+        // preload further in the scroll direction and less behind the screen, depending on velocity
+        float velocity = pdfView.getScrollVelocity();
+        float screenLength = pdfView.isSwipeVertical() ? pdfView.getHeight() : pdfView.getWidth();
+        float lookahead = Math.min(Math.abs(velocity) * Constants.PRELOAD_LOOKAHEAD_TIME,
+                screenLength * Constants.PRELOAD_MAX_SCREENS);
+        float startPreload = scaledPreloadOffset;
+        float endPreload = scaledPreloadOffset;
+        if (velocity > 0) {
+            startPreload = 0;
+        } else if (velocity < 0) {
+            endPreload = 0;
+        }
+        float firstXOffset, lastXOffset, firstYOffset, lastYOffset;
+        if (pdfView.isSwipeVertical()) {
+            firstXOffset = -xOffset + scaledPreloadOffset;
+            lastXOffset = -xOffset - pdfView.getWidth() - scaledPreloadOffset;
+            firstYOffset = -yOffset + startPreload;
+            lastYOffset = -yOffset - pdfView.getHeight() - endPreload;
+        } else {
+            firstXOffset = -xOffset + startPreload;
+            lastXOffset = -xOffset - pdfView.getWidth() - endPreload;
+            firstYOffset = -yOffset + scaledPreloadOffset;
+            lastYOffset = -yOffset - pdfView.getHeight() - scaledPreloadOffset;
+        }
 
         List<RenderRange> rangeList = getRenderRangeList(firstXOffset, firstYOffset, lastXOffset, lastYOffset);
 
@@ -260,18 +315,183 @@ class PagesLoader {
         }
         //Log.d("XX", " >> " + debug);
 
+        if (focus != null) {
+            parts = loadVisibleAroundFocus(rangeList);
+        } else {
+            parts = 0;
+            for (RenderRange range : rangeList) {
+                calculatePartSize(range.grid);
+                parts += loadPage(range.page, range.grid.firstRow, range.grid.lastRow, range.grid.firstCol, range.grid.lastCol, CACHE_SIZE - parts);
+                if (parts >= CACHE_SIZE) {
+                    //Log.d("XX", "parts >= CACHE_SIZE ...." + range.page);
+                    break;
+                }
+            }
+        }
+
+        // rendering thread takes tasks in order, so the lookahead is queued after the screen
+        // and gets only the part of the cache the screen left
+        int headroom = Math.min(CACHE_SIZE - parts, (int) (CACHE_SIZE * Constants.PRELOAD_MAX_CACHE_SHARE));
+        if (velocity != 0 && lookahead > 0 && headroom > 0 && !rangeList.isEmpty()) {
+            loadLookahead(velocity > 0, lookahead, rangeList, headroom);
+        }
+    }
+
+    /**
+     * Load pages in the lookahead area beyond the preload in the scroll direction, parts nearest
+     * to the screen first
+     *
+     * @param forward       true if the lookahead is after the screen, before it otherwise
+     * @param visibleRanges ranges loaded with the screen, their cells are skipped
+     */
+    private void loadLookahead(boolean forward, float lookahead, List<RenderRange> visibleRanges, int nbOfPartsLoadable) {
+        float scaledPreloadOffset = preloadOffset;
+        float first, last;
+        if (forward) {
+            first = -(pdfView.isSwipeVertical() ? yOffset + pdfView.getHeight() : xOffset + pdfView.getWidth())
+                    - scaledPreloadOffset;
+            last = first - lookahead;
+        } else {
+            last = -(pdfView.isSwipeVertical() ? yOffset : xOffset) + scaledPreloadOffset;
+            first = last + lookahead;
+        }
+        List<RenderRange> rangeList;
+        if (pdfView.isSwipeVertical()) {
+            rangeList = getRenderRangeList(-xOffset + scaledPreloadOffset, first,
+                    -xOffset - pdfView.getWidth() - scaledPreloadOffset, last);
+        } else {
+            rangeList = getRenderRangeList(first, -yOffset + scaledPreloadOffset,
+                    last, -yOffset - pdfView.getHeight() - scaledPreloadOffset);
+        }
+
+        // cells at the edge of the screen were loaded with it, pages loaded with the screen
+        // keep only their cells beyond it
         for (RenderRange range : rangeList) {
-            calculatePartSize(range.gridSize);
-            parts += loadPage(range.page, range.leftTop.row, range.rightBottom.row, range.leftTop.col, range.rightBottom.col, CACHE_SIZE - parts);
-            if (parts >= CACHE_SIZE) {
-                //Log.d("XX", "parts >= CACHE_SIZE ...." + range.page);
-                break;
+            RenderRange visibleRange = findRange(visibleRanges, range.page);
+            if (visibleRange != null) {
+                skipLoadedCells(range.grid, visibleRange.grid, forward);
+            }
+        }
+        if (!forward) {
+            Collections.reverse(rangeList);
+        }
+        for (RenderRange range : rangeList) {
+            if (findRange(visibleRanges, range.page) == null) {
+                loadThumbnail(range.page);
+            }
+        }
+
+        float screenCenter = pdfView.isSwipeVertical() ? pdfView.getHeight() / 2f : pdfView.getWidth() / 2f;
+        List<Cell> cells = getCells(rangeList);
+        for (Cell cell : cells) {
+            cell.distance = Math.abs((pdfView.isSwipeVertical() ? cell.y : cell.x) - screenCenter);
+        }
+        loadCells(cells, nbOfPartsLoadable);
+    }
+
+    private RenderRange findRange(List<RenderRange> rangeList, int page) {
+        for (RenderRange range : rangeList) {
+            if (range.page == page) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Limit the range of a lookahead grid along the swipe axis to cells beyond the loaded ones
+     */
+    private void skipLoadedCells(TileGrid.PageGrid grid, TileGrid.PageGrid loaded, boolean forward) {
+        if (pdfView.isSwipeVertical()) {
+            if (forward) {
+                grid.firstRow = Math.max(grid.firstRow, loaded.lastRow + 1);
+            } else {
+                grid.lastRow = Math.min(grid.lastRow, loaded.firstRow - 1);
             }
+        } else if (forward) {
+            grid.firstCol = Math.max(grid.firstCol, loaded.lastCol + 1);
+        } else {
+            grid.lastCol = Math.min(grid.lastCol, loaded.firstCol - 1);
+        }
+    }
+
+    /**
+     * Same as loading page by page, but parts of all pages are queued by distance to {@link #focus}
+     *
+     * @return number of loaded parts
+     */
+    private int loadVisibleAroundFocus(List<RenderRange> rangeList) {
+        List<Cell> cells = getCells(rangeList);
+        for (Cell cell : cells) {
+            float dx = cell.x - focus.x;
+            float dy = cell.y - focus.y;
+            cell.distance = dx * dx + dy * dy;
         }
+        return loadCells(cells, CACHE_SIZE);
+    }
+
+    /**
+     * @return cells of given ranges, with centers in screen coordinates
+     */
+    private List<Cell> getCells(List<RenderRange> rangeList) {
+        List<Cell> cells = new ArrayList<>();
+        for (RenderRange range : rangeList) {
+            calculatePartSize(range.grid);
+            float scaledPageWidth = pdfView.pdfFile.getPageWidth(range.page) * zoom;
+            float scaledPageHeight = pdfView.pdfFile.getPageHeight(range.page) * zoom;
+            float pageOffset = pdfView.pdfFile.getPageOffset(range.page, zoom, true);
+            float secondaryOffset = pdfView.pdfFile.getSecondaryPageOffset(range.page, zoom);
+            float pageX = (pdfView.isSwipeVertical() ? secondaryOffset : pageOffset) + currentXOffset;
+            float pageY = (pdfView.isSwipeVertical() ? pageOffset : secondaryOffset) + currentYOffset;
+            for (int row = range.grid.firstRow; row <= range.grid.lastRow; row++) {
+                for (int col = range.grid.firstCol; col <= range.grid.lastCol; col++) {
+                    RectF bounds = getCellBounds(row, col);
+                    if (bounds == null) {
+                        continue;
+                    }
+                    Cell cell = new Cell();
+                    cell.page = range.page;
+                    cell.bounds = bounds;
+                    cell.renderWidth = partRenderWidth * bounds.width();
+                    cell.renderHeight = partRenderHeight * bounds.height();
+                    cell.x = pageX + bounds.centerX() * scaledPageWidth;
+                    cell.y = pageY + bounds.centerY() * scaledPageHeight;
+                    cells.add(cell);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Load cells nearest first, see {@link Cell#distance}
+     *
+     * @return number of loaded parts
+     */
+    private int loadCells(List<Cell> cells, int nbOfPartsLoadable) {
+        Collections.sort(cells, distanceComparator);
 
+        int parts = 0;
+        for (Cell cell : cells) {
+            if (parts >= nbOfPartsLoadable) {
+                break;
+            }
+            if (!pdfView.cacheManager.upPartIfContained(cell.page, renderLevel, cell.bounds, cacheOrder)) {
+                pdfView.renderingHandler.addRenderingTask(cell.page, cell.renderWidth, cell.renderHeight,
+                        cell.bounds, false, cacheOrder, renderLevel, set, pdfView.isBestQuality(),
+                        pdfView.isAnnotationRendering());
+                pendingParts++;
+            }
+            cacheOrder++;
+            parts++;
+        }
+        return parts;
     }
 
     private int loadPage(int page, int firstRow, int lastRow, int firstCol, int lastCol, int nbOfPartsLoadable) {
+        if (canRenderInSinglePass()) {
+            return loadPageInSinglePass(page, firstRow, lastRow, firstCol, lastCol, nbOfPartsLoadable);
+        }
         int loaded = 0;
         for (int row = firstRow; row <= lastRow; row++) {
             //
@@ -289,32 +509,159 @@ class PagesLoader {
         return loaded;
     }
 
-    private boolean loadCell(int page, int row, int col, float pageRelativePartWidth, float pageRelativePartHeight) {
+    /**
+     * Cells are grouped into regions rendered with one pdfium call, size of the regions
+     * at the render zoom is checked in {@link #fitsSinglePass(RectF, RectF)}
+     */
+    private boolean canRenderInSinglePass() {
+        return pdfView.isSinglePassRendering();
+    }
 
-        //Log.d("RenderingHandler","int page:"+page+", int row:"+row+", int col"+col+", float pageRelativePartWidth:"+pageRelativePartWidth+", float pageRelativePartHeight:"+pageRelativePartHeight+" ");
+    /**
+     * Same as {@link #loadPage(int, int, int, int, int, int)}, but adjacent not cached cells are grouped
+     * into rectangles of at most {@link Constants#SINGLE_PASS_MAX_PIXELS}, every group is rendered once
+     * and sliced into parts by the rendering thread. A group never covers a cached cell
+     */
+    private int loadPageInSinglePass(int page, int firstRow, int lastRow, int firstCol, int lastCol, int nbOfPartsLoadable) {
+        int loaded = 0;
+        // groups ending at the previous row, which may be continued by runs of the current row
+        List<SliceGroup> previousRow = new ArrayList<>();
+        List<SliceGroup> currentRow = new ArrayList<>();
+        SliceGroup run = null;
+        loop:
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                RectF pageRelativeBounds = getCellBounds(row, col);
+                if (pageRelativeBounds == null) {
+                    run = closeRun(page, run, previousRow, currentRow);
+                } else {
+                    if (pdfView.cacheManager.upPartIfContained(page, renderLevel, pageRelativeBounds, cacheOrder)) {
+                        run = closeRun(page, run, previousRow, currentRow);
+                    } else {
+                        if (run != null && !fitsSinglePass(run.region, pageRelativeBounds)) {
+                            run = closeRun(page, run, previousRow, currentRow);
+                        }
+                        if (run == null) {
+                            run = new SliceGroup();
+                            run.firstCol = col;
+                            run.region = new RectF(pageRelativeBounds);
+                        }
+                        run.lastCol = col;
+                        run.region.union(pageRelativeBounds);
+                        run.slices.add(pageRelativeBounds);
+                        run.cacheOrders.add(cacheOrder);
+                    }
+                    cacheOrder++;
+                    loaded++;
+                }
+                if (loaded >= nbOfPartsLoadable) {
+                    break loop;
+                }
+            }
+            run = closeRun(page, run, previousRow, currentRow);
+            for (SliceGroup group : previousRow) {
+                renderSlices(page, group);
+            }
+            previousRow.clear();
+            List<SliceGroup> groups = previousRow;
+            previousRow = currentRow;
+            currentRow = groups;
+        }
+        closeRun(page, run, previousRow, currentRow);
+        for (SliceGroup group : previousRow) {
+            renderSlices(page, group);
+        }
+        for (SliceGroup group : currentRow) {
+            renderSlices(page, group);
+        }
+        return loaded;
+    }
 
-        float relX = pageRelativePartWidth * col;
-        float relY = pageRelativePartHeight * row;
-        float relWidth = pageRelativePartWidth;
-        float relHeight = pageRelativePartHeight;
+    /**
+     * Append run of not cached cells to the group of the previous row spanning the same columns,
+     * or make it a new group
+     *
+     * @return null, so the caller starts a new run
+     */
+    private SliceGroup closeRun(int page, SliceGroup run, List<SliceGroup> previousRow, List<SliceGroup> currentRow) {
+        if (run == null) {
+            return null;
+        }
+        for (SliceGroup group : previousRow) {
+            if (group.firstCol == run.firstCol && group.lastCol == run.lastCol) {
+                previousRow.remove(group);
+                if (fitsSinglePass(group.region, run.region)) {
+                    group.region.union(run.region);
+                    group.slices.addAll(run.slices);
+                    group.cacheOrders.addAll(run.cacheOrders);
+                    currentRow.add(group);
+                    return null;
+                }
+                renderSlices(page, group);
+                break;
+            }
+        }
+        currentRow.add(run);
+        return null;
+    }
 
-        float renderWidth = partRenderWidth;
-        float renderHeight = partRenderHeight;
-        if (relX + relWidth > 1) {
-            relWidth = 1 - relX;
+    /**
+     * @return true if region extended by given bounds is small enough at the render zoom for one pdfium call
+     */
+    private boolean fitsSinglePass(RectF region, RectF bounds) {
+        float width = (Math.max(region.right, bounds.right) - Math.min(region.left, bounds.left)) * partRenderWidth;
+        float height = (Math.max(region.bottom, bounds.bottom) - Math.min(region.top, bounds.top)) * partRenderHeight;
+        return width * height <= Constants.SINGLE_PASS_MAX_PIXELS;
+    }
+
+    private void renderSlices(int page, SliceGroup group) {
+        if (group.slices.size() == 1) {
+            RectF bounds = group.slices.get(0);
+            pdfView.renderingHandler.addRenderingTask(page, partRenderWidth * bounds.width(),
+                    partRenderHeight * bounds.height(), bounds, false, group.cacheOrders.get(0), renderLevel, set,
+                    pdfView.isBestQuality(), pdfView.isAnnotationRendering());
+        } else {
+            int[] cacheOrders = new int[group.cacheOrders.size()];
+            for (int i = 0; i < cacheOrders.length; i++) {
+                cacheOrders[i] = group.cacheOrders.get(i);
+            }
+            pdfView.renderingHandler.addRenderingTask(page, partRenderWidth, partRenderHeight, group.slices,
+                    cacheOrders, renderLevel, set, pdfView.isBestQuality(), pdfView.isAnnotationRendering());
         }
-        if (relY + relHeight > 1) {
-            relHeight = 1 - relY;
+        pendingParts += group.slices.size();
+    }
+
+    /**
+     * @return page relative bounds of the cell or null if it's outside of the page
+     */
+    private RectF getCellBounds(int row, int col) {
+        if (!TileGrid.cellBounds(row, col, pageRelativePartWidth, pageRelativePartHeight,
+                partRenderWidth, partRenderHeight, cellBounds)) {
+            return null;
         }
-        renderWidth *= relWidth;
-        renderHeight *= relHeight;
-        RectF pageRelativeBounds = new RectF(relX, relY, relX + relWidth, relY + relHeight);
+        float relX = cellBounds[0];
+        float relY = cellBounds[1];
+        return new RectF(relX, relY, relX + cellBounds[2], relY + cellBounds[3]);
+    }
 
-        if (renderWidth > 0 && renderHeight > 0) {
-            if (!pdfView.cacheManager.upPartIfContained(page, pageRelativeBounds, cacheOrder)) {
+    private boolean loadCell(int page, int row, int col, float pageRelativePartWidth, float pageRelativePartHeight) {
+
+        //Log.d("RenderingHandler","int page:"+page+", int row:"+row+", int col"+col+", float pageRelativePartWidth:"+pageRelativePartWidth+", float pageRelativePartHeight:"+pageRelativePartHeight+" ");
+
+        if (TileGrid.cellBounds(row, col, pageRelativePartWidth, pageRelativePartHeight,
+                partRenderWidth, partRenderHeight, cellBounds)) {
+            float relX = cellBounds[0];
+            float relY = cellBounds[1];
+            float relWidth = cellBounds[2];
+            float relHeight = cellBounds[3];
+            float renderWidth = partRenderWidth * relWidth;
+            float renderHeight = partRenderHeight * relHeight;
+            RectF pageRelativeBounds = new RectF(relX, relY, relX + relWidth, relY + relHeight);
+            if (!pdfView.cacheManager.upPartIfContained(page, renderLevel, pageRelativeBounds, cacheOrder)) {
                 pdfView.renderingHandler.addRenderingTask(page, renderWidth, renderHeight,
-                        pageRelativeBounds, false, cacheOrder, pdfView.isBestQuality(),
+                        pageRelativeBounds, false, cacheOrder, renderLevel, set, pdfView.isBestQuality(),
                         pdfView.isAnnotationRendering());
+                pendingParts++;
             }
             cacheOrder++;
             return true;
@@ -323,24 +670,94 @@ class PagesLoader {
     }
 
     private void loadThumbnail(int page) {
-        SizeF pageSize = pdfView.pdfFile.getPageSize(page);
-        float thumbnailWidth = pageSize.getWidth() * Constants.THUMBNAIL_RATIO;
-        float thumbnailHeight = pageSize.getHeight() * Constants.THUMBNAIL_RATIO;
+        float thumbnailWidth = pdfView.pdfFile.getPageWidth(page) * Constants.THUMBNAIL_RATIO;
+        float thumbnailHeight = pdfView.pdfFile.getPageHeight(page) * Constants.THUMBNAIL_RATIO;
         if (!pdfView.cacheManager.containsThumbnail(page, thumbnailRect)) {
 
             pdfView.renderingHandler.addRenderingTaskForPlaceHolder(page, thumbnailWidth, thumbnailHeight, thumbnailRect);
             pdfView.renderingHandler.addRenderingTask(page,
                     thumbnailWidth, thumbnailHeight, thumbnailRect,
-                    true, 0, pdfView.isBestQuality(), pdfView.isAnnotationRendering());
+                    true, 0, 0, PartCache.NO_SET, pdfView.isBestQuality(), pdfView.isAnnotationRendering());
         }
     }
 
 
     void loadPages() {
+        loadPages(null);
+    }
+
+    /**
+     * @param focus point on the screen parts should be loaded around, null to load them in grid order
+     */
+    void loadPages(PointF focus) {
+        loadPages(pdfView.getCurrentXOffset(), pdfView.getCurrentYOffset(), pdfView.getZoom(), focus, true);
+    }
+
+    /**
+     * Load parts of the viewport an animation ends at. Level of the set is not requested from the cache,
+     * parts of the level on the screen must stay until the animation ends and loads its own set
+     */
+    void loadPagesAhead(float currentXOffset, float currentYOffset, float zoom) {
+        loadPages(currentXOffset, currentYOffset, zoom, null, false);
+    }
+
+    /**
+     * Load parts of the viewport at given offsets and zoom
+     *
+     * @param focus        point on the screen parts should be loaded around, null to load them in grid order
+     * @param requestLevel true to let the cache recycle parts of other levels once parts of this set are rendered
+     */
+    private void loadPages(float currentXOffset, float currentYOffset, float zoom, PointF focus, boolean requestLevel) {
+        this.currentXOffset = currentXOffset;
+        this.currentYOffset = currentYOffset;
+        this.zoom = zoom;
+        this.focus = focus;
         cacheOrder = 1;
-        xOffset = -MathUtils.max(pdfView.getCurrentXOffset(), 0);
-        yOffset = -MathUtils.max(pdfView.getCurrentYOffset(), 0);
+        pendingParts = 0;
+        set = pdfView.cacheManager.makeANewSet();
+        calculateRenderLevel();
+        xOffset = -MathUtils.max(currentXOffset, 0);
+        yOffset = -MathUtils.max(currentYOffset, 0);
 
         loadVisible();
+        if (requestLevel) {
+            pdfView.cacheManager.setRequestedLevel(set, renderLevel, pendingParts);
+        }
+    }
+
+    /**
+     * Load thumbnails and parts of the viewport at given offsets and zoom, without preload around it.
+     * Used to prefetch link destinations, tasks are queued after the ones of the last set
+     * and parts are not counted as pending ones of the current level
+     */
+    void loadViewport(float currentXOffset, float currentYOffset, float zoom, int nbOfPartsLoadable) {
+        this.currentXOffset = currentXOffset;
+        this.currentYOffset = currentYOffset;
+        this.zoom = zoom;
+        this.focus = null;
+        set = PartCache.NO_SET;
+        calculateRenderLevel();
+        xOffset = -MathUtils.max(currentXOffset, 0);
+        yOffset = -MathUtils.max(currentYOffset, 0);
+
+        List<RenderRange> rangeList = getRenderRangeList(-xOffset, -yOffset,
+                -xOffset - pdfView.getWidth(), -yOffset - pdfView.getHeight());
+        int parts = 0;
+        for (RenderRange range : rangeList) {
+            loadThumbnail(range.page);
+            calculatePartSize(range.grid);
+            parts += loadPage(range.page, range.grid.firstRow, range.grid.lastRow, range.grid.firstCol,
+                    range.grid.lastCol, nbOfPartsLoadable - parts);
+            if (parts >= nbOfPartsLoadable) {
+                break;
+            }
+        }
+    }
+
+    private void calculateRenderLevel() {
+        // with deep zoom every level doubles resolution, so tiles of a level are quarters of the previous one
+        float levelStep = pdfView.isDeepZoom() ? 2 : Constants.ZOOM_LEVEL_STEP;
+        renderLevel = MathUtils.zoomLevel(zoom, levelStep);
+        renderZoom = MathUtils.levelZoom(renderLevel, levelStep);
     }
 }
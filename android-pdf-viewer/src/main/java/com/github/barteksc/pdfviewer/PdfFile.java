@@ -21,8 +21,10 @@ import android.graphics.RectF;
 import android.util.Log;
 import android.util.SparseBooleanArray;
 
+import com.github.barteksc.pdfviewer.core.PageLayout;
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
 import com.github.barteksc.pdfviewer.model.DualPageDisplay;
+import com.github.barteksc.pdfviewer.util.Constants;
 import com.github.barteksc.pdfviewer.util.FitPolicy;
 import com.github.barteksc.pdfviewer.util.PageSizeCalculator;
 import com.github.barteksc.pdfviewer.util.SnapEdge;
@@ -31,28 +33,70 @@ import com.shockwave.pdfium.PdfiumCore;
 import com.shockwave.pdfium.util.Size;
 import com.shockwave.pdfium.util.SizeF;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Pages, layout and native document of a single {@link PDFView}.
+ * <p>
+ * Concurrency contract:
+ * <ul>
+ * <li>Original page sizes are set while loading, before the view gets the document. Afterwards they are changed
+ * only on the UI thread by {@link #setMeasuredPageSizes(int, int[], int[])}.</li>
+ * <li>Layout is calculated by {@link #calculateLayout(Size)} on the layout thread of the view, which reads original sizes,
+ * the first one while loading.
+ * It's published with {@link #setLayout(Layout)} and read on the UI thread, other threads read the volatile snapshot.
+ * If original sizes change while a calculation is pending, the view requests a new one and drops the result
+ * of the old one by its generation, so a layout read from partly changed sizes is never shown.</li>
+ * <li>{@link #measurePageSize(int)} reads native sizes on the layout thread under the lock of the document,
+ * which {@link #dispose()} takes too.</li>
+ * <li>{@link #openPage(int)} and {@link #pageHasError(int)} may be called from any thread, they are guarded
+ * by a lock owned by this document only, so documents of different views never wait for each other here.
+ * DocumentLockBenchmark of pdfviewer-core compares it to one lock shared by all documents.</li>
+ * <li>{@link #renderPageBitmap(Bitmap, int, Rect, boolean)} is called from the rendering thread after the page was opened.</li>
+ * <li>Every native call still goes through PdfiumCore, which serializes them with one process wide lock.
+ * Calls such as {@link #getPageLinks(int)} can therefore wait for a render of another document,
+ * so avoid them on the UI thread while rendering.</li>
+ * </ul>
+ */
 public class PdfFile {
 
-    private static final Object lock = new Object();
+    /**
+     * Guards opened pages of this document
+     */
+    private final Object lock = new Object();
     private PdfDocument pdfDocument;
     private PdfiumCore pdfiumCore;
     private int pagesCount = 0;
     /**
-     * Original page sizes
+     * Original page sizes, widths and heights are kept in separate primitive arrays
+     * indexed by page, so layout passes and geometry queries don't touch boxed objects
      */
-    private List<Size> originalPageSizes = new ArrayList<>();
+    private int[] originalPageWidths = new int[0];
+    private int[] originalPageHeights = new int[0];
     /**
-     * Scaled page sizes
+     * Current layout, replaced as a whole when it's recalculated. Layouts are never changed once
+     * published, so other threads read a consistent one without locking
      */
-    private List<SizeF> pageSizes = new ArrayList<>();
+    private volatile Layout layout;
+    private final AtomicInteger layoutVersions = new AtomicInteger();
     /**
      * Opened pages with indicator whether opening was successful
      */
     private SparseBooleanArray openedPages = new SparseBooleanArray();
+    /**
+     * Document pages with open native handle, in access order (least recently used first)
+     */
+    private final LinkedHashMap<Integer, Boolean> openedPagesLru = new LinkedHashMap<>(16, 0.75f, true);
     /**
      * Page with maximum width
      */
@@ -61,14 +105,6 @@ public class PdfFile {
      * Page with maximum height
      */
     private Size originalMaxHeightPageSize = new Size(0, 0);
-    /**
-     * Scaled page with maximum height
-     */
-    private SizeF maxHeightPageSize = new SizeF(0, 0);
-    /**
-     * Scaled page with maximum width
-     */
-    private SizeF maxWidthPageSize = new SizeF(0, 0);
     /**
      * True if scrolling is vertical, else it's horizontal
      */
@@ -81,18 +117,6 @@ public class PdfFile {
      * Calculate spacing automatically so each page fits on it's own in the center of the view
      */
     private boolean autoSpacing;
-    /**
-     * Calculated offsets for pages
-     */
-    private List<Float> pageOffsets = new ArrayList<>();
-    /**
-     * Calculated auto spacing for pages
-     */
-    private List<Float> pageSpacing = new ArrayList<>();
-    /**
-     * Calculated document length (width or height, depending on swipe mode)
-     */
-    private float documentLength = 0;
     private final FitPolicy pageFitPolicy;
     /**
      * True if every page should fit separately according to the FitPolicy,
@@ -108,18 +132,44 @@ public class PdfFile {
 
     //request อยากให้แสดงแบบไหน
     private int requestDisplayDualPageType = PDFView.Configurator.REQUEST_DISPLAY_DUALPAGE_TYPE_ONLY_SINGLE_PAGE;
-    //แสดงผลจริง
-    private int realDisplayDualPageType = PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SINGLE_PAGE;
-
-    private Size viewSize = null;
 
     private boolean isRTL = false;
 
-    private ArrayList<Integer> pageBreaks;
+    /**
+     * Positions of pages in reading order, counted from 1, which end a spread in dual page mode
+     */
+    private final BitSet pageBreaks = new BitSet();
+
+    /**
+     * Overview grid layout, every page gets a cell of the same size, see {@link #calculateOverviewLayout(int, float)}
+     */
+    private int overviewColumns = 1;
+    private float overviewCellWidth = 0;
+    private float overviewCellHeight = 0;
+
+    /**
+     * True if only pages around the default page are measured while loading, others get
+     * an estimated size until they are measured in background
+     */
+    private final boolean lazyLayout;
+    /**
+     * Pages which size was read from the document, null when all pages are measured
+     */
+    private boolean[] measuredPages;
+    private int measuredPagesCount;
+    /**
+     * Page the background measuring continues from
+     */
+    private int nextMeasuredPage;
+    /**
+     * Key of page sizes in {@link LayoutCache}, null if they are not cached
+     */
+    private String layoutCacheKey;
 
     PdfFile(PdfiumCore pdfiumCore, PdfDocument pdfDocument, FitPolicy pageFitPolicy, Size viewSize, boolean isRTL, int[] originalUserPages,
             boolean isVertical, int spacing, boolean autoSpacing, boolean fitEachPage,
-            int requestDisplayDualPageType, ArrayList<Integer> pageBreaks) {
+            int requestDisplayDualPageType, ArrayList<Integer> pageBreaks, boolean lazyLayout, int defaultPage,
+            int[] cachedPageSizes) {
         this.pdfiumCore = pdfiumCore;
         this.pdfDocument = pdfDocument;
         this.pageFitPolicy = pageFitPolicy;
@@ -130,8 +180,15 @@ public class PdfFile {
         this.fitEachPage = fitEachPage;
         this.requestDisplayDualPageType = requestDisplayDualPageType;
         this.isRTL = isRTL;
-        this.pageBreaks = pageBreaks;
-        setup(viewSize);
+        if (pageBreaks != null) {
+            for (Integer pageBreak : pageBreaks) {
+                if (pageBreak != null && pageBreak >= 0) {
+                    this.pageBreaks.set(pageBreak);
+                }
+            }
+        }
+        this.lazyLayout = lazyLayout;
+        setup(viewSize, defaultPage, cachedPageSizes);
     }
 
     public int getRequestDisplayDualPageType() {
@@ -139,10 +196,10 @@ public class PdfFile {
     }
 
     public int getRealDisplayDualPageType() {
-        return this.realDisplayDualPageType;
+        return layout.realDisplayDualPageType;
     }
 
-    private void setup(Size viewSize) {
+    private void setup(Size viewSize, int defaultPage, int[] cachedPageSizes) {
 
         if (originalUserPages != null) {
             pagesCount = originalUserPages.length;
@@ -150,37 +207,221 @@ public class PdfFile {
             pagesCount = pdfiumCore.getPageCount(pdfDocument);
         }
 
-        for (int i = 0; i < pagesCount; i++) {
-            Size pageSize = pdfiumCore.getPageSize(pdfDocument, documentPage(i));
-            if (pageSize.getWidth() > originalMaxWidthPageSize.getWidth()) {
-                originalMaxWidthPageSize = pageSize;
+        originalPageWidths = new int[pagesCount];
+        originalPageHeights = new int[pagesCount];
+        if (cachedPageSizes != null) {
+            for (int i = 0; i < pagesCount; i++) {
+                int docPage = documentPage(i);
+                if (docPage >= 0 && 2 * docPage + 1 < cachedPageSizes.length) {
+                    setOriginalPageSize(i, cachedPageSizes[2 * docPage], cachedPageSizes[2 * docPage + 1]);
+                }
             }
-            if (pageSize.getHeight() > originalMaxHeightPageSize.getHeight()) {
-                originalMaxHeightPageSize = pageSize;
+        } else if (lazyLayout && pagesCount > 2 * Constants.LAZY_LAYOUT_INITIAL_PAGES + 1) {
+            measureInitialPages(defaultPage);
+        } else {
+            for (int i = 0; i < pagesCount; i++) {
+                Size pageSize = pdfiumCore.getPageSize(pdfDocument, documentPage(i));
+                setOriginalPageSize(i, pageSize.getWidth(), pageSize.getHeight());
             }
-            originalPageSizes.add(pageSize);
         }
 
         recalculatePageSizes(viewSize);
     }
 
+    /**
+     * @return true if maximum page size changed
+     */
+    private boolean setOriginalPageSize(int pageIndex, int width, int height) {
+        originalPageWidths[pageIndex] = width;
+        originalPageHeights[pageIndex] = height;
+        boolean changed = false;
+        if (width > originalMaxWidthPageSize.getWidth()) {
+            originalMaxWidthPageSize = new Size(width, height);
+            changed = true;
+        }
+        if (height > originalMaxHeightPageSize.getHeight()) {
+            originalMaxHeightPageSize = new Size(width, height);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Measure pages around the default page and give the rest the size
+     * which is the most common among measured pages
+     */
+    private void measureInitialPages(int defaultPage) {
+        int windowSize = 2 * Constants.LAZY_LAYOUT_INITIAL_PAGES + 1;
+        int first = Math.max(0, Math.min(pagesCount - windowSize, defaultPage - Constants.LAZY_LAYOUT_INITIAL_PAGES));
+        int last = first + windowSize - 1;
+        measuredPages = new boolean[pagesCount];
+        for (int i = first; i <= last; i++) {
+            Size pageSize = pdfiumCore.getPageSize(pdfDocument, documentPage(i));
+            setOriginalPageSize(i, pageSize.getWidth(), pageSize.getHeight());
+            measuredPages[i] = true;
+        }
+        measuredPagesCount = windowSize;
+        nextMeasuredPage = (last + 1) % pagesCount;
+
+        int estimatedWidth = 0;
+        int estimatedHeight = 0;
+        int maxOccurrences = 0;
+        for (int i = first; i <= last; i++) {
+            int occurrences = 0;
+            for (int j = first; j <= last; j++) {
+                if (originalPageWidths[j] == originalPageWidths[i] && originalPageHeights[j] == originalPageHeights[i]) {
+                    occurrences++;
+                }
+            }
+            if (occurrences > maxOccurrences) {
+                maxOccurrences = occurrences;
+                estimatedWidth = originalPageWidths[i];
+                estimatedHeight = originalPageHeights[i];
+            }
+        }
+        for (int i = 0; i < pagesCount; i++) {
+            if (!measuredPages[i]) {
+                originalPageWidths[i] = estimatedWidth;
+                originalPageHeights[i] = estimatedHeight;
+            }
+        }
+    }
+
+    void setLayoutCacheKey(String layoutCacheKey) {
+        this.layoutCacheKey = layoutCacheKey;
+    }
+
+    String getLayoutCacheKey() {
+        return layoutCacheKey;
+    }
+
+    /**
+     * @return width and height of every document page one after another, null if some pages
+     * are not measured or only chosen pages are displayed
+     */
+    int[] getDocumentPageSizes() {
+        if (measuredPages != null || originalUserPages != null) {
+            return null;
+        }
+        int[] sizes = new int[2 * pagesCount];
+        for (int i = 0; i < pagesCount; i++) {
+            sizes[2 * i] = originalPageWidths[i];
+            sizes[2 * i + 1] = originalPageHeights[i];
+        }
+        return sizes;
+    }
+
+    /**
+     * @return true if some pages still have estimated size, so offsets and document length
+     * may change as they are measured
+     */
+    public boolean isLayoutEstimated() {
+        return measuredPages != null;
+    }
+
+    /**
+     * @return page the next background measuring should start from, -1 if all pages are measured
+     */
+    int getNextUnmeasuredPage() {
+        if (measuredPages == null) {
+            return -1;
+        }
+        for (int i = 0; i < pagesCount; i++) {
+            int page = (nextMeasuredPage + i) % pagesCount;
+            if (!measuredPages[page]) {
+                return page;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of consecutive unmeasured pages from given one, not more than max
+     */
+    int getUnmeasuredPagesCount(int startPage, int max) {
+        int count = 0;
+        while (count < max && startPage + count < pagesCount && !measuredPages[startPage + count]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Read size of a page from the document. Layout is not touched, so it can be called
+     * from a background thread. The lock is held for the read, so {@link #dispose()}
+     * can't close the document in the middle of it
+     *
+     * @return null if the document is already closed
+     */
+    Size measurePageSize(int pageIndex) {
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            int docPage = documentPage(pageIndex);
+            if (docPage < 0) {
+                return null;
+            }
+            return pdfiumCore.getPageSize(pdfDocument, docPage);
+        }
+    }
+
+    /**
+     * Replace estimated sizes of pages with measured ones. Calculate a new layout
+     * with {@link #calculateLayout(Size)} afterwards if it returns true
+     *
+     * @return true if any page size differs from its estimate
+     */
+    boolean setMeasuredPageSizes(int startPage, int[] widths, int[] heights) {
+        if (measuredPages == null) {
+            return false;
+        }
+        boolean changed = false;
+        for (int i = 0; i < widths.length; i++) {
+            int page = startPage + i;
+            if (measuredPages[page]) {
+                continue;
+            }
+            if (originalPageWidths[page] != widths[i] || originalPageHeights[page] != heights[i]) {
+                changed = true;
+            }
+            if (setOriginalPageSize(page, widths[i], heights[i])) {
+                changed = true;
+            }
+            measuredPages[page] = true;
+            measuredPagesCount++;
+        }
+        nextMeasuredPage = (startPage + widths.length) % pagesCount;
+        if (measuredPagesCount == pagesCount) {
+            measuredPages = null;
+        }
+        return changed;
+    }
+
     /**
      * Call after view size change to recalculate page sizes, offsets and document length
      *
      * @param viewSize new size of changed view
      */
     public void recalculatePageSizes(Size viewSize) {
-        this.viewSize = viewSize;
-        pageSizes.clear();
+        setLayout(calculateLayout(viewSize));
+    }
+
+    /**
+     * Calculate page sizes, offsets and document length for given view size, without changing
+     * current layout. Only reads original page sizes and options, so it can run on the layout thread.
+     * Original sizes may still be changed on the UI thread meanwhile, then the caller must drop
+     * the result and calculate again, see the class description
+     */
+    Layout calculateLayout(Size viewSize) {
+        Layout layout = new Layout(layoutVersions.incrementAndGet());
+        layout.viewSize = viewSize;
+        layout.pageWidths = new float[pagesCount];
+        layout.pageHeights = new float[pagesCount];
         PageSizeCalculator calculator = new PageSizeCalculator(pageFitPolicy, originalMaxWidthPageSize,
                 originalMaxHeightPageSize, viewSize, fitEachPage);
-        maxWidthPageSize = calculator.getOptimalMaxWidthPageSize();
-        maxHeightPageSize = calculator.getOptimalMaxHeightPageSize();
-
-        for (Size size : originalPageSizes) {
-            SizeF pageSize = calculator.calculate(size);
-            this.pageSizes.add(pageSize);
-        }
+        layout.maxWidthPageSize = calculator.getOptimalMaxWidthPageSize();
+        layout.maxHeightPageSize = calculator.getOptimalMaxHeightPageSize();
 
         /* คำนวนแบบเก่า
         int viewSizeHalfWidth = viewSize.getWidth() / 2;
@@ -209,49 +450,120 @@ public class PdfFile {
             this.calcDualPages();
         }*/
         //คำนวนแบบใหม่
-        this.realDisplayDualPageType = this.calcDualPages(viewSize);
-        if (this.requestDisplayDualPageType == PDFView.Configurator.REQUEST_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE_IF_IT_CAN) {
+        layout.realDisplayDualPageType = this.calcDualPages(layout);
+        if (layout.spreadCount == 0) {
+            for (int i = 0; i < pagesCount; i++) {
+                calculator.calculate(originalPageWidths[i], originalPageHeights[i], layout.pageWidths, layout.pageHeights, i);
+            }
+        } else {
             //ถ้าเป็นหน้าคู่จะต้องปรับ size ของหน้าจอใหม่
+            // every page belongs to one spread, so it's sized once, paired pages to half of the view
             PageSizeCalculator calculatorForDual = new PageSizeCalculator(pageFitPolicy, new Size(originalMaxWidthPageSize.getWidth() / 2, originalMaxWidthPageSize.getHeight()),
                     new Size(originalMaxHeightPageSize.getWidth() / 2, originalMaxHeightPageSize.getHeight()),new Size( viewSize.getWidth() / 2, viewSize.getHeight()), fitEachPage);
-            for (DualPageDisplay display : this.dualPageDisplays) {
-                int count = 0;
-                if (display.getPageLeft() != -1) {
-                    count++;
-                }
-                if (display.getPageRight() != -1) {
-                    count++;
-                }
-                if (count == 2) {
-                    Size fullSizeL = originalPageSizes.get(display.getPageLeft());
-                    SizeF pageSizeL = calculatorForDual.calculate(fullSizeL);
-                    this.pageSizes.set(display.getPageLeft(), pageSizeL);
-
-                    Size fullSizeR = originalPageSizes.get(display.getPageRight());
-                    SizeF pageSizeR = calculatorForDual.calculate(fullSizeR);
-                    this.pageSizes.set(display.getPageRight(), pageSizeR);
+            for (int spread = 0; spread < layout.spreadCount; spread++) {
+                int left = layout.spreadLeftPages[spread];
+                int right = layout.spreadRightPages[spread];
+                if (left != -1 && right != -1) {
+                    calculatorForDual.calculate(originalPageWidths[left], originalPageHeights[left], layout.pageWidths, layout.pageHeights, left);
+                    calculatorForDual.calculate(originalPageWidths[right], originalPageHeights[right], layout.pageWidths, layout.pageHeights, right);
+                } else {
+                    int page = left != -1 ? left : right;
+                    calculator.calculate(originalPageWidths[page], originalPageHeights[page], layout.pageWidths, layout.pageHeights, page);
                 }
             }
         }
 
 
+        prepareDualPageTables(layout);
         if (autoSpacing) {
-            prepareAutoSpacing(viewSize);
+            prepareAutoSpacing(layout);
         }
-        prepareDocLen();
-        preparePagesOffset();
+        prepareDocLen(layout);
+        preparePagesOffset(layout);
+        return layout;
+    }
+
+    /**
+     * Make given layout the current one, call on the UI thread
+     */
+    void setLayout(Layout layout) {
+        this.layout = layout;
     }
 
-    final private List<DualPageDisplay> dualPageDisplays = new ArrayList<>();
+    /**
+     * @return version of current layout, it changes whenever layout is recalculated
+     */
+    public int getLayoutVersion() {
+        return layout.version;
+    }
 
+    /**
+     * @return size of the view current layout was calculated for
+     */
+    public Size getViewSize() {
+        return layout.viewSize;
+    }
+
+    /**
+     * Map pages to spreads and calculate their offsets once, so dual page geometry queries don't
+     * search the spreads. Every spread is as wide as the view, pages of a pair meet in its middle,
+     * a single page is centered
+     */
+    private void prepareDualPageTables(Layout layout) {
+        int[] spreads = new int[pagesCount];
+        Arrays.fill(spreads, -1);
+        float[] pageOffsets = new float[pagesCount];
+        float[] spreadOffsets = new float[layout.spreadCount];
+        float viewWidth = layout.viewSize.getWidth();
+        for (int spread = 0; spread < layout.spreadCount; spread++) {
+            int left = layout.spreadLeftPages[spread];
+            int right = layout.spreadRightPages[spread];
+            float middle = viewWidth * spread + viewWidth / 2f;
+            if (left != -1 && right != -1) {
+                spreads[left] = spread;
+                spreads[right] = spread;
+                pageOffsets[left] = middle - layout.pageWidths[left];
+                pageOffsets[right] = middle;
+                spreadOffsets[spread] = pageOffsets[left];
+            } else if (left != -1 || right != -1) {
+                int page = left != -1 ? left : right;
+                spreads[page] = spread;
+                pageOffsets[page] = middle - layout.pageWidths[page] / 2;
+                spreadOffsets[spread] = pageOffsets[page];
+            }
+        }
+        layout.pageToSpread = spreads;
+        layout.dualPageOffsets = pageOffsets;
+        layout.dualSpreadOffsets = spreadOffsets;
+    }
+
+    /**
+     * @return index of the spread showing the page in dual page mode, -1 if there is no such spread
+     */
+    public int getSpreadOfPage(int pageIndex) {
+        Layout layout = this.layout;
+        if (pageIndex < 0 || pageIndex >= layout.pageToSpread.length) {
+            return -1;
+        }
+        return layout.pageToSpread[pageIndex];
+    }
+
+    /**
+     * Spreads of current layout as objects, prefer {@link #getSpreadPages(int)} and {@link #getPageCountForDualPage()}
+     */
     public List<DualPageDisplay> getDualPageDisplays() {
-        return this.dualPageDisplays;
+        return layout.dualPageDisplays;
     }
 
-    private int calcDualPages(Size viewSize) {
-        this.dualPageDisplays.clear(); //ลบของเก่าออกให้หมด
+    /**
+     * Pair pages into spreads in one pass over pages in reading order, from the last page for RTL.
+     * A page starts a spread on its leading side, left for LTR and right for RTL. A page at
+     * a break ends its spread, or starts a new one on the trailing side if the leading one is taken
+     */
+    private int calcDualPages(Layout layout) {
+        Size viewSize = layout.viewSize;
         int pageCount = this.getPagesCount();
-        List<Integer> breaks = this.pageBreaks;
+        BitSet breaks = this.pageBreaks;
         boolean maybeCanDisplayDualPage = this.autoSpacing &&
                 !this.isVertical &&
                 this.requestDisplayDualPageType == PDFView.Configurator.REQUEST_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE_IF_IT_CAN;
@@ -261,101 +573,19 @@ public class PdfFile {
         if (viewSize.getWidth() < viewSize.getHeight()) {
             return PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SINGLE_PAGE; //หน้าเดี๋ยวแน่ๆ
         }
-        float halfOfView = viewSize.getWidth() / 2.0f;
-        PageSizeCalculator calculator = new PageSizeCalculator(pageFitPolicy, originalMaxWidthPageSize,
-                originalMaxHeightPageSize, viewSize, fitEachPage);
-        int realDisplayDualPage = PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE;
-        if (isRTL) {
-            int i = pageCount - 1;
-            int dualIndex = 0;
-            boolean isRight = true;
-            while (i >= 0) {
-                boolean isBreak = false;
-                // เช็คการ break
-                if (breaks.contains(pageCount - i) /*|| this.pageSizes.get(i).getWidth() > halfOfView*/) {
-                    if (isRight) {
-                        isBreak = true;
-                    } else {
-                        dualIndex++;
-                    }
-                }
-                //add to dualPageDisplays
-                this.dualDisplaysAddNewEmptyItem(dualIndex);
-                if (isRight) {
-                    this.dualPageDisplays.get(dualIndex).setPageRight(i);
-                } else {
-                    this.dualPageDisplays.get(dualIndex).setPageLeft(i);
-                }
-                //คำนวนว่าจะต้องโดดหรือไม่โดดไป dualIndex ต่อไป
-                if (isBreak) {
-                    //มัน add ข้อมูลด้านขวาแล้วไป dual index ต่อไปเลย
-                    dualIndex++;
-                } else {
-                    if (isRight) {
-                        //เปลี่ยนไป add ที่อันขวา
-                        isRight = false;
-                    } else {
-                        //มัน add ข้อมูลด้านขวาแล้วไป dual index ต่อไปเลย
-                        isRight = true;
-                        dualIndex++;
-                    }
-                }
-
-                i--;
-            }
-            Collections.reverse(dualPageDisplays);
-        } else {
-
-            int i = 0;
-            int dualIndex = 0;
-            boolean isLeft = true;
-            while (i < pageCount) {
-                boolean isBreak = false;
-                // เช็คการ break
-                if (breaks.contains(i + 1) /*|| this.pageSizes.get(i).getWidth() > halfOfView*/) {
-                    if (isLeft) {
-                        isBreak = true;
-                    } else {
-                        dualIndex++;
-                    }
-                }
-
-                //add to dualPageDisplays
-                this.dualDisplaysAddNewEmptyItem(dualIndex);
-                if (isLeft) {
-                    this.dualPageDisplays.get(dualIndex).setPageLeft(i);
-                } else {
-                    this.dualPageDisplays.get(dualIndex).setPageRight(i);
-                }
-
-                //คำนวนว่าจะต้องโดดหรือไม่โดดไป dualIndex ต่อไป
-                if (isBreak) {
-                    //มัน add ข้อมูลด้านขวาแล้วไป dual index ต่อไปเลย
-                    dualIndex++;
-                } else {
-                    if (isLeft) {
-                        //เปลี่ยนไป add ที่อันขวา
-                        isLeft = false;
-                    } else {
-                        //มัน add ข้อมูลด้านขวาแล้วไป dual index ต่อไปเลย
-                        isLeft = true;
-                        dualIndex++;
-                    }
-                }
-
-                i++;
-            }
-        }
-
-
-        return realDisplayDualPage;
-    }
-
-    private void dualDisplaysAddNewEmptyItem(int dualIndex) {
-        while (this.dualPageDisplays.size() <= dualIndex) {
-            this.dualPageDisplays.add(new DualPageDisplay(-1, -1));
+        // every spread has at least one page, so there are never more spreads than pages
+        int[] leftPages = new int[pageCount];
+        int[] rightPages = new int[pageCount];
+        layout.spreadCount = PageLayout.pairSpreads(pageCount, breaks, isRTL, leftPages, rightPages);
+        layout.spreadLeftPages = leftPages;
+        layout.spreadRightPages = rightPages;
+        // built before the layout is published, so it's never written after other threads can read it
+        List<DualPageDisplay> displays = new ArrayList<>(layout.spreadCount);
+        for (int spread = 0; spread < layout.spreadCount; spread++) {
+            displays.add(new DualPageDisplay(leftPages[spread], rightPages[spread]));
         }
-
+        layout.dualPageDisplays = Collections.unmodifiableList(displays);
+        return PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE;
     }
 
     //คำนวนหน้าที่จะต้องติดกัน
@@ -417,20 +647,41 @@ public class PdfFile {
     }
 
     public int getPageCountForDualPage() {
-        return this.dualPageDisplays.size();
+        return layout.spreadCount;
     }
 
+    /**
+     * Allocates a new {@link SizeF} on every call, prefer {@link #getPageWidth(int)}
+     * and {@link #getPageHeight(int)} in code running for every frame
+     */
     public SizeF getPageSize(int pageIndex) {
-        int docPage = documentPage(pageIndex);
-        if (docPage < 0) {
-            return new SizeF(0, 0);
-        }
-        return pageSizes.get(pageIndex);
+        return new SizeF(getPageWidth(pageIndex), getPageHeight(pageIndex));
     }
 
     public SizeF getScaledPageSize(int pageIndex, float zoom) {
-        SizeF size = getPageSize(pageIndex);
-        return new SizeF(size.getWidth() * zoom, size.getHeight() * zoom);
+        return new SizeF(getPageWidth(pageIndex) * zoom, getPageHeight(pageIndex) * zoom);
+    }
+
+    /**
+     * @return width of the page at zoom 1 or 0 if there is no such page
+     */
+    public float getPageWidth(int pageIndex) {
+        Layout layout = this.layout;
+        if (documentPage(pageIndex) < 0) {
+            return 0;
+        }
+        return layout.pageWidths[pageIndex];
+    }
+
+    /**
+     * @return height of the page at zoom 1 or 0 if there is no such page
+     */
+    public float getPageHeight(int pageIndex) {
+        Layout layout = this.layout;
+        if (documentPage(pageIndex) < 0) {
+            return 0;
+        }
+        return layout.pageHeights[pageIndex];
     }
 
     /**
@@ -439,7 +690,7 @@ public class PdfFile {
      * @return size of page
      */
     public SizeF getMaxPageSize() {
-        return isVertical ? maxWidthPageSize : maxHeightPageSize;
+        return isVertical ? layout.maxWidthPageSize : layout.maxHeightPageSize;
         //return isVertical ? maxWidthPageSize : new SizeF(maxHeightPageSize.getWidth(),1553f);
     }
 
@@ -452,32 +703,21 @@ public class PdfFile {
         //Log.d("YYY","  index: "+index + "  getHeight: " + getPageSize(index).getHeight());
         //return getPageSize(index).getHeight();
         //return getMaxPageSize().getHeight();
-        if (getPageSize(index).getHeight() > getMaxPageSize().getHeight()) {
-            return getPageSize(index).getHeight();
-        }
-        return getMaxPageSize().getHeight();
+        return Math.max(getPageHeight(index), getMaxPageSize().getHeight());
     }
 
-    private void prepareAutoSpacing(Size viewSize) {
-        pageSpacing.clear();
-        int pagesCount = this.getPagesCount();
-        for (int i = 0; i < pagesCount; i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float spacing = Math.max(0, isVertical ? viewSize.getHeight() - pageSize.getHeight() :
-                    viewSize.getWidth() - pageSize.getWidth());
-            //สำหรับหน้าคู่
-            //if (this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            //    spacing = Math.max(0, isVertical ? (viewSize.getHeight() / 2f) - pageSize.getHeight() :
-            //            (viewSize.getWidth() / 2f) - pageSize.getWidth());
-            //}
-            if (i < pagesCount - 1) {
-                spacing += spacingPx;
-            }
-            pageSpacing.add(spacing);
-        }
+    private void prepareAutoSpacing(Layout layout) {
+        Size viewSize = layout.viewSize;
+        //สำหรับหน้าคู่
+        //if (this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+        //    spacing = Math.max(0, isVertical ? (viewSize.getHeight() / 2f) - pageSize.getHeight() :
+        //            (viewSize.getWidth() / 2f) - pageSize.getWidth());
+        //}
+        layout.pageSpacing = PageLayout.autoSpacing(layout.pageWidths, layout.pageHeights, isVertical,
+                viewSize.getWidth(), viewSize.getHeight(), spacingPx);
     }
 
-    private void prepareDocLen() {
+    private void prepareDocLen(Layout layout) {
 
         //หน้าคู่
         //if (this.viewSize != null && this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
@@ -486,107 +726,69 @@ public class PdfFile {
         //    return;
         //}
 
-        float length = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            length += isVertical ? pageSize.getHeight() : pageSize.getWidth();
-            if (autoSpacing) {
-                length += pageSpacing.get(i);
-            } else if (i < getPagesCount() - 1) {
-                length += spacingPx;
-            }
-        }
-        documentLength = length;
-    }
-
-    private void preparePagesOffset() {
-        pageOffsets.clear();
-        float offset = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            SizeF pageSize = pageSizes.get(i);
-            float size = isVertical ? pageSize.getHeight() : pageSize.getWidth();
-            if (autoSpacing) {
-                offset += pageSpacing.get(i) / 2f;
-                if (i == 0) {
-                    offset -= spacingPx / 2f;
-                } else if (i == getPagesCount() - 1) {
-                    offset += spacingPx / 2f;
-                }
-                pageOffsets.add(offset);
-                offset += size + pageSpacing.get(i) / 2f;
-            } else {
-                pageOffsets.add(offset);
-                offset += size + spacingPx;
-            }
-        }
+        layout.documentLength = PageLayout.documentLength(layout.pageWidths, layout.pageHeights, isVertical,
+                autoSpacing ? layout.pageSpacing : null, spacingPx);
+    }
+
+    private void preparePagesOffset(Layout layout) {
+        int pagesCount = getPagesCount();
+        float[] pageOffsets = new float[pagesCount];
+        float[] pageStarts = new float[pagesCount];
+        PageLayout.pageOffsets(layout.pageWidths, layout.pageHeights, isVertical,
+                autoSpacing ? layout.pageSpacing : null, spacingPx, pageOffsets, pageStarts);
+        layout.pageOffsets = pageOffsets;
+        layout.pageStarts = pageStarts;
     }
 
     public float getDocLen(float zoom) {
+        Layout layout = this.layout;
 
         //หน้าคู่
-        if (this.viewSize != null && this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            int count = this.dualPageDisplays.size();
-            float length = count * this.viewSize.getWidth();
+        if (layout.viewSize != null && layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            float length = layout.spreadCount * layout.viewSize.getWidth();
             return length * zoom;
         }
 
-        return documentLength * zoom;
+        return layout.documentLength * zoom;
     }
 
     /**
      * Get the page's height if swiping vertical, or width if swiping horizontal.
      */
     public float getPageLength(int pageIndex, float zoom) {
-        if (this.viewSize != null && this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+        Layout layout = this.layout;
+        if (layout.viewSize != null && layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
             //pageIndex สำหรับ REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE จะคือ หน้าที่แสดง ไม่ใช่หน้าจริงของ PDF
-            if (pageIndex >= dualPageDisplays.size()) {
+            if (pageIndex < 0 || pageIndex >= layout.spreadCount) {
                 return 0;
             }
-            DualPageDisplay display = dualPageDisplays.get(pageIndex);
+            int left = layout.spreadLeftPages[pageIndex];
+            int right = layout.spreadRightPages[pageIndex];
             float len = 0.0f;
-            if (display.getPageLeft() != -1) {
-                SizeF size = getPageSize(display.getPageLeft());
-                len += size.getWidth();
+            if (left != -1) {
+                len += layout.pageWidths[left];
             }
-            if (display.getPageRight() != -1) {
-                SizeF size = getPageSize(display.getPageRight());
-                len += size.getWidth();
+            if (right != -1) {
+                len += layout.pageWidths[right];
             }
             return len * zoom;
         }
-        SizeF size = getPageSize(pageIndex);
-        return (isVertical ? size.getHeight() : size.getWidth()) * zoom;
+        return (isVertical ? getPageHeight(pageIndex) : getPageWidth(pageIndex)) * zoom;
     }
 
     public float getPageSpacing(int pageIndex, float zoom) {
-        float spacing = autoSpacing ? pageSpacing.get(pageIndex) : spacingPx;
+        Layout layout = this.layout;
+        float spacing = autoSpacing ? layout.pageSpacing[pageIndex] : spacingPx;
         return spacing * zoom;
     }
 
     public float getPageOffsetForLocalTranslationX(int pageIndex, float zoom) {
+        Layout layout = this.layout;
 
         //offset สำหรับหน้าคู่
-        if (this.viewSize != null && this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
-            int index = DualPageDisplay.findIndexByPage(this.dualPageDisplays, pageIndex);
-            if (index != -1) {
-                DualPageDisplay display = this.dualPageDisplays.get(index);
-
-                //float offsetBefore = 0f;
-                float offsetBefore = this.viewSize.getWidth() * (index);
-                if (display.getPageLeft() == pageIndex) {
-                    float offset = this.pageSizes.get(pageIndex).getWidth();
-                    if (display.getPageRight() == -1) {  //ถ้าไม่มีหน้าคู่มันจะต้องอยู่ตรงกลาง
-                        return (offsetBefore + (this.viewSize.getWidth() / 2f) - (offset / 2)) * zoom;
-                    }
-                    return (offsetBefore + (this.viewSize.getWidth() / 2f) - offset) * zoom;
-                } else if (display.getPageRight() == pageIndex) {
-                    if (display.getPageLeft() == -1) {//ถ้าไม่มีหน้าคู่มันจะต้องอยู่ตรงกลาง
-                        float offset = this.pageSizes.get(pageIndex).getWidth();
-                        return (offsetBefore + (this.viewSize.getWidth() / 2f) - (offset / 2)) * zoom;
-                    }
-                    return (offsetBefore + (this.viewSize.getWidth() / 2f)) * zoom;
-                }
-
+        if (layout.viewSize != null && layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            if (getSpreadOfPage(pageIndex) != -1) {
+                return layout.dualPageOffsets[pageIndex] * zoom;
             }
         }
 
@@ -594,21 +796,22 @@ public class PdfFile {
     }
 
     public Float snapOffsetForPage(int pageIndex, SnapEdge edge) {
+        Layout layout = this.layout;
 
-        if (this.viewSize == null) {
+        if (layout.viewSize == null) {
             return null;
         }
 
-        if (this.realDisplayDualPageType != PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+        if (layout.realDisplayDualPageType != PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
             return null;
         }
 
-        int index = DualPageDisplay.findIndexByPage(this.dualPageDisplays, pageIndex);
+        int index = getSpreadOfPage(pageIndex);
         if (index == -1) {
             return null;
         }
 
-        return (float) this.viewSize.getWidth() * index;
+        return (float) layout.viewSize.getWidth() * index;
     }
 
 
@@ -616,140 +819,181 @@ public class PdfFile {
      * Get primary page offset, that is Y for vertical scroll and X for horizontal scroll
      */
     public float getPageOffset(int pageIndex, float zoom, boolean isPageIndex) {
+        Layout layout = this.layout;
 
-        if (this.viewSize != null && this.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+        if (layout.viewSize != null && layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
             //pageIndex สำหรับ REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE จะคือ หน้าที่แสดง ไม่ใช่หน้าจริงของ PDF
             //แต่ถ้า isPageIndex == true มันคือหน้าจริงของ PDF
-            int selectedIndex = -1;
-            int countPage = 0;
             if (isPageIndex) {
-                selectedIndex = pageIndex;
-                int dualPageDisplayIndex = DualPageDisplay.findIndexByPage(dualPageDisplays, pageIndex);
-                if (dualPageDisplayIndex == -1) {
-                    return 0;
-                }
-                DualPageDisplay display = dualPageDisplays.get(dualPageDisplayIndex);
-                if (display.getPageLeft() != -1) {
-                    countPage++;
-                }
-                if (display.getPageRight() != -1) {
-                    countPage++;
-                }
-
-                float offsetBefore = this.viewSize.getWidth() * (dualPageDisplayIndex);
-                float width = this.pageSizes.get(selectedIndex).getWidth();
-                if (countPage == 1) {
-                    return (offsetBefore + (this.viewSize.getWidth() / 2f) - (width / 2)) * zoom;
-                } else if (countPage == 2) {
-                    if (display.getPageLeft() == pageIndex) {
-                        return (offsetBefore + (this.viewSize.getWidth() / 2f) - width) * zoom;
-                    } else if (display.getPageRight() == pageIndex) {
-                        return (offsetBefore + (this.viewSize.getWidth() / 2f)) * zoom;
-                    }
-                }
-            } else {
-                if (pageIndex >= dualPageDisplays.size()) {
-                    return 0;
-                }
-                DualPageDisplay display = dualPageDisplays.get(pageIndex);
-                if (display.getPageLeft() != -1) {
-                    selectedIndex = display.getPageLeft();
-                    countPage++;
-                }
-                if (display.getPageRight() != -1) {
-                    if (selectedIndex == -1) {
-                        selectedIndex = display.getPageRight();
-                    }
-                    countPage++;
-                }
-                if (selectedIndex == -1 || countPage <= 0) {
-                    return 0;
-                }
-                float offsetBefore = this.viewSize.getWidth() * (pageIndex);
-                float width = this.pageSizes.get(selectedIndex).getWidth();
-                if (countPage == 1) {  //ถ้าไม่มีหน้าคู่มันจะต้องอยู่ตรงกลาง
-                    //Log.d("XX1","------ pageIndex: "+pageIndex+" countPage = "+countPage + " offsetBefore:"+ offsetBefore + " width:"+width+ "    => " + ((offsetBefore + (this.viewSize.getWidth() / 2f) - (width / 2)) * zoom));
-                    return (offsetBefore + (this.viewSize.getWidth() / 2f) - (width / 2)) * zoom;
-                } else if (countPage == 2) {
-                    return (offsetBefore + (this.viewSize.getWidth() / 2f) - width) * zoom;
-                }
+                return getSpreadOfPage(pageIndex) != -1 ? layout.dualPageOffsets[pageIndex] * zoom : 0;
             }
-            return 0;
+            if (pageIndex < 0 || pageIndex >= layout.dualSpreadOffsets.length) {
+                return 0;
+            }
+            return layout.dualSpreadOffsets[pageIndex] * zoom;
         }
 
         int docPage = documentPage(pageIndex);
         if (docPage < 0) {
             return 0;
         }
-        return pageOffsets.get(pageIndex) * zoom;
+        return layout.pageOffsets[pageIndex] * zoom;
     }
 
     /**
      * Get secondary page offset, that is X for vertical scroll and Y for horizontal scroll
      */
     public float getSecondaryPageOffset(int pageIndex, float zoom) {
-        SizeF pageSize = getPageSize(pageIndex);
         if (isVertical) {
             float maxWidth = getMaxPageWidth();
-            return zoom * (maxWidth - pageSize.getWidth()) / 2; //x
+            return zoom * (maxWidth - getPageWidth(pageIndex)) / 2; //x
         } else {
 
             float maxHeight = getMaxPageHeight(pageIndex);
             //Log.d("XXX","zoom"+zoom+" * (maxHeight:"+maxHeight+" - pageSize.getHeight() "+pageSize.getHeight()+") / 2");
-            return zoom * (maxHeight - pageSize.getHeight()) / 2; //y
+            return zoom * (maxHeight - getPageHeight(pageIndex)) / 2; //y
         }
     }
 
     //return int[2]  โดย {firstPage,lastPage,}
-    public int[] getPageAtOffsetForDualPage(float offsetFirst, float zoom) {
+    /**
+     * @return number of spreads, pairs of pages in dual page mode, single pages otherwise
+     */
+    public int getSpreadCount() {
+        Layout layout = this.layout;
+        if (layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            return layout.spreadCount;
+        }
+        return pagesCount;
+    }
 
-        int count = this.dualPageDisplays.size();
-        float viewWidth = this.viewSize.getWidth() * zoom;
-        int selected = -1;
-        for (int i = 0; i < count; i++) {
-            float offset = viewWidth * i;
-            if (offset >= offsetFirst) {
-                selected = i;
-                break;
+    /**
+     * @return index of the spread at given offset, see {@link #getSpreadCount()}
+     */
+    public int getSpreadAtOffset(float offset, float zoom) {
+        Layout layout = this.layout;
+        if (layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            int spread = (int) (offset / (layout.viewSize.getWidth() * zoom));
+            return Math.max(0, Math.min(layout.spreadCount - 1, spread));
+        }
+        return getPageAtOffset(offset, zoom);
+    }
+
+    /**
+     * @return pages of the spread, one or two
+     */
+    public int[] getSpreadPages(int spread) {
+        Layout layout = this.layout;
+        if (layout.realDisplayDualPageType == PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SHOW_DUAL_PAGE) {
+            int left = layout.spreadLeftPages[spread];
+            int right = layout.spreadRightPages[spread];
+            if (left != -1 && right != -1) {
+                return new int[]{left, right};
             }
+            return new int[]{left != -1 ? left : right};
         }
+        return new int[]{spread};
+    }
 
-        if (selected < 0) {
-            selected = 0;
+    /**
+     * Calculate layout of the overview grid. Cells are as high as needed
+     * for the page with the highest height to width ratio
+     *
+     * @param columns   number of pages in a row
+     * @param viewWidth width of the view, in pixels
+     */
+    public void calculateOverviewLayout(int columns, float viewWidth) {
+        Layout layout = this.layout;
+        float maxRatio = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            if (layout.pageWidths[i] > 0) {
+                maxRatio = Math.max(maxRatio, layout.pageHeights[i] / layout.pageWidths[i]);
+            }
         }
+        overviewColumns = columns;
+        overviewCellWidth = viewWidth / columns;
+        overviewCellHeight = overviewCellWidth * (maxRatio > 0 ? maxRatio : 1);
+    }
 
+    public int getOverviewColumns() {
+        return overviewColumns;
+    }
 
-        DualPageDisplay displayStart = null;
-        DualPageDisplay displayEnd = null;
-        if (selected - 1 >= 0) {
-            int prev = selected - 1;
-            displayStart = this.dualPageDisplays.get(prev);
-        } else {
-            displayStart = this.dualPageDisplays.get(selected);
-        }
+    public float getOverviewCellHeight() {
+        return overviewCellHeight;
+    }
 
-        if (selected + 1 < count) {
-            int next = selected + 1;
-            displayEnd = this.dualPageDisplays.get(next);
-        } else {
-            displayEnd = this.dualPageDisplays.get(selected);
+    /**
+     * @return height of the whole overview grid
+     */
+    public float getOverviewLength() {
+        int rows = (pagesCount + overviewColumns - 1) / overviewColumns;
+        return rows * overviewCellHeight;
+    }
+
+    /**
+     * @return page at given position of the overview grid or -1 if there is no page
+     */
+    public int getOverviewPageAt(float x, float y) {
+        if (x < 0 || y < 0 || overviewCellWidth <= 0 || overviewCellHeight <= 0) {
+            return -1;
         }
+        int col = (int) (x / overviewCellWidth);
+        int row = (int) (y / overviewCellHeight);
+        if (col >= overviewColumns) {
+            return -1;
+        }
+        if (isRTL) {
+            col = overviewColumns - 1 - col;
+        }
+        int page = row * overviewColumns + col;
+        return page < pagesCount ? page : -1;
+    }
 
-        int firstPage = displayStart.getPageLeft();
-        int lastPage = firstPage;
-        if (firstPage == -1) {
-            firstPage = displayStart.getPageRight();
+    /**
+     * Get bounds of the page in overview grid coordinates, page is centered
+     * in its cell and scaled to fit it, keeping its aspect ratio
+     *
+     * @param padding space between the page and the cell borders
+     * @param bounds  rectangle to store result in
+     */
+    public void getOverviewPageBounds(int pageIndex, float padding, RectF bounds) {
+        int row = pageIndex / overviewColumns;
+        int col = pageIndex % overviewColumns;
+        if (isRTL) {
+            col = overviewColumns - 1 - col;
         }
-        if (displayStart.getPageRight() != -1) {
-            lastPage = displayStart.getPageRight();
+        float maxWidth = Math.max(0, overviewCellWidth - 2 * padding);
+        float maxHeight = Math.max(0, overviewCellHeight - 2 * padding);
+        float pageWidth = getPageWidth(pageIndex);
+        float width = maxWidth;
+        float height = pageWidth > 0 ? width * getPageHeight(pageIndex) / pageWidth : maxHeight;
+        if (height > maxHeight) {
+            width = height > 0 ? width * maxHeight / height : 0;
+            height = maxHeight;
         }
+        float left = col * overviewCellWidth + (overviewCellWidth - width) / 2;
+        float top = row * overviewCellHeight + (overviewCellHeight - height) / 2;
+        bounds.set(left, top, left + width, top + height);
+    }
 
-        if (displayEnd != null) {
-            lastPage = displayEnd.getPageRight();
-            if (lastPage < displayEnd.getPageLeft()) {
-                lastPage = displayEnd.getPageLeft();
-            }
+    public int[] getPageAtOffsetForDualPage(float offsetFirst, float zoom) {
+        Layout layout = this.layout;
+
+        int count = layout.spreadCount;
+        float viewWidth = layout.viewSize.getWidth() * zoom;
+        // first spread starting at or after the offset, spreads are as wide as the view
+        int selected = (int) Math.ceil(offsetFirst / viewWidth);
+        selected = Math.max(0, Math.min(count - 1, selected));
+
+        int start = Math.max(0, selected - 1);
+        int end = Math.min(count - 1, selected + 1);
+
+        int firstPage = layout.spreadLeftPages[start];
+        if (firstPage == -1) {
+            firstPage = layout.spreadRightPages[start];
         }
+        int lastPage = Math.max(layout.spreadLeftPages[end], layout.spreadRightPages[end]);
 
         return new int[]{firstPage, lastPage};
     }
@@ -779,15 +1023,7 @@ public class PdfFile {
 
         }*/
 
-        int currentPage = 0;
-        for (int i = 0; i < getPagesCount(); i++) {
-            float off = pageOffsets.get(i) * zoom - getPageSpacing(i, zoom) / 2f;
-            if (off >= offset) {
-                break;
-            }
-            currentPage++;
-        }
-        return --currentPage >= 0 ? currentPage : 0;
+        return PageLayout.pageAtOffset(layout.pageStarts, offset, zoom);
     }
 
     public boolean openPage(int pageIndex) throws PageRenderingException {
@@ -801,19 +1037,45 @@ public class PdfFile {
                 try {
                     pdfiumCore.openPage(pdfDocument, docPage);
                     openedPages.put(docPage, true);
+                    openedPagesLru.put(docPage, true);
+                    closeLeastRecentlyUsedPages(docPage);
                     return true;
                 } catch (Exception e) {
                     openedPages.put(docPage, false);
                     throw new PageRenderingException(pageIndex, e);
                 }
             }
+            // touch page, so it becomes the most recently used one
+            openedPagesLru.get(docPage);
             return false;
         }
     }
 
+    /**
+     * Close native handles of least recently used pages above {@link Constants.Cache#MAX_OPENED_PAGES}.
+     * Pages which failed to open stay in {@link #openedPages}, so they are not opened again
+     */
+    private void closeLeastRecentlyUsedPages(int keepDocPage) {
+        Iterator<Integer> iterator = openedPagesLru.keySet().iterator();
+        while (openedPagesLru.size() > Constants.Cache.MAX_OPENED_PAGES && iterator.hasNext()) {
+            int docPage = iterator.next();
+            if (docPage == keepDocPage) {
+                continue;
+            }
+            if (!PageCloser.closePage(pdfiumCore, pdfDocument, docPage)) {
+                // closing is not supported by this pdfium version, keep pages open
+                return;
+            }
+            iterator.remove();
+            openedPages.delete(docPage);
+        }
+    }
+
     public boolean pageHasError(int pageIndex) {
         int docPage = documentPage(pageIndex);
-        return !openedPages.get(docPage, false);
+        synchronized (lock) {
+            return !openedPages.get(docPage, false);
+        }
     }
 
     public void renderPageBitmap(Bitmap bitmap, int pageIndex, Rect bounds, boolean annotationRendering) {
@@ -841,19 +1103,161 @@ public class PdfFile {
         return pdfiumCore.getPageLinks(pdfDocument, docPage);
     }
 
+    /**
+     * Map a rect in page coordinates to the device. The page is opened again if its handle was closed,
+     * see {@link #openPage(int)}, and the lock is held, so it can't be closed in the middle of mapping
+     *
+     * @return null if the document is closed or the page can't be opened
+     */
     public RectF mapRectToDevice(int pageIndex, int startX, int startY, int sizeX, int sizeY,
                                  RectF rect) {
-        int docPage = documentPage(pageIndex);
-        return pdfiumCore.mapRectToDevice(pdfDocument, docPage, startX, startY, sizeX, sizeY, 0, rect);
+        synchronized (lock) {
+            if (pdfDocument == null) {
+                return null;
+            }
+            try {
+                openPage(pageIndex);
+            } catch (PageRenderingException e) {
+                return null;
+            }
+            if (pageHasError(pageIndex)) {
+                return null;
+            }
+            int docPage = documentPage(pageIndex);
+            return pdfiumCore.mapRectToDevice(pdfDocument, docPage, startX, startY, sizeX, sizeY, 0, rect);
+        }
     }
 
     public void dispose() {
-        if (pdfiumCore != null && pdfDocument != null) {
-            pdfiumCore.closeDocument(pdfDocument);
+        synchronized (lock) {
+            if (pdfiumCore != null && pdfDocument != null) {
+                pdfiumCore.closeDocument(pdfDocument);
+            }
+            openedPagesLru.clear();
+            pdfDocument = null;
+            originalUserPages = null;
+        }
+    }
+
+    /**
+     * Page sizes, offsets and spreads calculated for one view size, see {@link #calculateLayout(Size)}.
+     * It's filled only while being calculated, published layout is never changed
+     */
+    static class Layout {
+        /**
+         * Identifies the layout, render tasks planned against older layouts are dropped, unless their page keeps its size
+         */
+        private final int version;
+        private Size viewSize;
+        /**
+         * Scaled pages with maximum width and height
+         */
+        private SizeF maxWidthPageSize;
+        private SizeF maxHeightPageSize;
+        /**
+         * Scaled page sizes
+         */
+        private float[] pageWidths;
+        private float[] pageHeights;
+        private int realDisplayDualPageType = PDFView.Configurator.REAL_DISPLAY_DUALPAGE_TYPE_SINGLE_PAGE;
+        /**
+         * Left and right page of every spread in dual page mode, -1 for an empty side.
+         * Arrays may be longer than the number of spreads
+         */
+        private int[] spreadLeftPages = new int[0];
+        private int[] spreadRightPages = new int[0];
+        private int spreadCount = 0;
+        /**
+         * Spreads as objects, built from the arrays, see {@link PdfFile#getDualPageDisplays()}
+         */
+        private List<DualPageDisplay> dualPageDisplays = Collections.emptyList();
+        /**
+         * Index of the spread showing the page, -1 if it's not shown, used in dual page mode
+         */
+        private int[] pageToSpread;
+        /**
+         * Offsets of pages and spreads at zoom 1, used in dual page mode
+         */
+        private float[] dualPageOffsets;
+        private float[] dualSpreadOffsets;
+        /**
+         * Calculated auto spacing for pages
+         */
+        private float[] pageSpacing = new float[0];
+        /**
+         * Calculated document length (width or height, depending on swipe mode)
+         */
+        private float documentLength;
+        /**
+         * Calculated offsets for pages
+         */
+        private float[] pageOffsets;
+        /**
+         * Where pages start at zoom 1, half of their spacing before their offset. Never decreasing,
+         * so page at an offset is found by binary search
+         */
+        private float[] pageStarts;
+
+        private Layout(int version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * PdfiumCore has no public method to close a single page, its native handle is released
+     * only with the whole document. Close it through the private native method instead,
+     * holding the same global lock PdfiumCore uses for all native calls.
+     */
+    private static class PageCloser {
+
+        private static final String TAG = PageCloser.class.getName();
+
+        private static boolean initialized = false;
+        private static Method nativeClosePage;
+        private static Field nativePagesPtr;
+        private static Object pdfiumLock;
+
+        private static synchronized boolean init() {
+            if (!initialized) {
+                initialized = true;
+                try {
+                    nativeClosePage = PdfiumCore.class.getDeclaredMethod("nativeClosePage", long.class);
+                    nativeClosePage.setAccessible(true);
+                    nativePagesPtr = PdfDocument.class.getDeclaredField("mNativePagesPtr");
+                    nativePagesPtr.setAccessible(true);
+                    Field lockField = PdfiumCore.class.getDeclaredField("lock");
+                    lockField.setAccessible(true);
+                    pdfiumLock = lockField.get(null);
+                } catch (Exception e) {
+                    Log.e(TAG, "Closing pages is not supported", e);
+                    nativeClosePage = null;
+                }
+            }
+            return nativeClosePage != null;
         }
 
-        pdfDocument = null;
-        originalUserPages = null;
+        /**
+         * @return true if page is closed or was not opened at all, false if closing is not supported
+         */
+        static boolean closePage(PdfiumCore pdfiumCore, PdfDocument pdfDocument, int docPage) {
+            if (!init()) {
+                return false;
+            }
+            try {
+                synchronized (pdfiumLock) {
+                    @SuppressWarnings("unchecked")
+                    Map<Integer, Long> pagesPtr = (Map<Integer, Long>) nativePagesPtr.get(pdfDocument);
+                    Long pagePtr = pagesPtr.remove(docPage);
+                    if (pagePtr != null) {
+                        nativeClosePage.invoke(pdfiumCore, pagePtr);
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                Log.e(TAG, "Cannot close page " + docPage, e);
+                return false;
+            }
+        }
     }
 
     private void printDebug(String title) {
@@ -891,6 +1295,24 @@ public class PdfFile {
         return userPage;
     }
 
+    /**
+     * Inverse of {@link #documentPage(int)}, e.g. for destinations of links and bookmarks
+     *
+     * @return first user page showing given page of the document, -1 if it's not shown
+     */
+    public int userPage(int documentPage) {
+        int[] userPages = originalUserPages;
+        if (userPages == null) {
+            return documentPage >= 0 && documentPage < getPagesCount() ? documentPage : -1;
+        }
+        for (int i = 0; i < userPages.length; i++) {
+            if (userPages[i] == documentPage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public int documentPage(int userPage) {
         int documentPage = userPage;
         if (originalUserPages != null) {
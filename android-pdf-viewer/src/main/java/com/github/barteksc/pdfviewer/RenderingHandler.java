@@ -25,9 +25,14 @@ import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
 
+import com.github.barteksc.pdfviewer.core.PartCache;
 import com.github.barteksc.pdfviewer.exception.PageRenderingException;
+import com.github.barteksc.pdfviewer.model.AtlasSlot;
 import com.github.barteksc.pdfviewer.model.PagePart;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A {@link Handler} that will process incoming {@link RenderingTask} messages
  * and alert {@link PDFView#onBitmapRendered(PagePart)} when the portion of the
@@ -39,12 +44,18 @@ class RenderingHandler extends Handler {
      */
     static final int MSG_RENDER_TASK = 1;
 
+    /**
+     * {@link Message#what} of a request to read links of visible pages, see {@link LinkPrefetcher}
+     */
+    static final int MSG_PREFETCH_LINKS = 2;
+
     private static final String TAG = RenderingHandler.class.getName();
 
     private PDFView pdfView;
 
     private RectF renderBounds = new RectF();
     private Rect roundedRenderBounds = new Rect();
+    private Rect atlasSourceRect = new Rect();
     private Matrix renderMatrix = new Matrix();
     private boolean running = false;
 
@@ -53,13 +64,65 @@ class RenderingHandler extends Handler {
         this.pdfView = pdfView;
     }
 
-    void addRenderingTask(int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
+    /**
+     * @param set set of {@link CacheManager} the part is requested by, or {@link PartCache#NO_SET}
+     */
+    void addRenderingTask(int page, float width, float height, RectF bounds, boolean thumbnail, int cacheOrder, int level, int set, boolean bestQuality, boolean annotationRendering) {
         //Log.d(TAG,"addRenderingTask-----------------------------"+page + " w:" +width +  " h:"+  height + " thumbnail:"+thumbnail);
         RenderingTask task = new RenderingTask(width, height, bounds, page, thumbnail, cacheOrder, bestQuality, annotationRendering);
+        task.level = level;
+        task.set = set;
+        Message msg = obtainMessage(MSG_RENDER_TASK, task);
+        sendMessage(msg);
+    }
+
+    /**
+     * Render given region of a page in a single pass and slice it into parts
+     *
+     * @param width       page width, in pixels, at which parts are rendered
+     * @param height      page height, in pixels, at which parts are rendered
+     * @param slices      page relative bounds of parts to cut from rendered region
+     * @param cacheOrders cache order of every slice
+     * @param level       zoom level of the parts grid
+     * @param set         set of {@link CacheManager} the parts are requested by, or {@link PartCache#NO_SET}
+     */
+    void addRenderingTask(int page, float width, float height, List<RectF> slices, int[] cacheOrders, int level, int set, boolean bestQuality, boolean annotationRendering) {
+        RectF bounds = new RectF(slices.get(0));
+        for (RectF slice : slices) {
+            bounds.union(slice);
+        }
+        RenderingTask task = new RenderingTask(width, height, bounds, page, false, cacheOrders[0], bestQuality, annotationRendering);
+        task.slices = slices;
+        task.sliceCacheOrders = cacheOrders;
+        task.level = level;
+        task.set = set;
+        Message msg = obtainMessage(MSG_RENDER_TASK, task);
+        sendMessage(msg);
+    }
+
+    /**
+     * Render whole page as a thumbnail of the overview grid
+     *
+     * @param width  thumbnail width, in pixels
+     * @param height thumbnail height, in pixels
+     */
+    void addOverviewRenderingTask(int page, float width, float height, boolean annotationRendering) {
+        RenderingTask task = new RenderingTask(width, height, new RectF(0, 0, 1, 1), page, true, 0, false, annotationRendering);
+        task.overview = true;
         Message msg = obtainMessage(MSG_RENDER_TASK, task);
         sendMessage(msg);
     }
 
+    /**
+     * Find destinations of links on given pages once already queued tasks are rendered,
+     * and let the view prefetch them
+     */
+    void addLinkPrefetchTask(int firstPage, int lastPage) {
+        removeMessages(MSG_PREFETCH_LINKS);
+        Message msg = obtainMessage(MSG_PREFETCH_LINKS, firstPage, lastPage);
+        sendMessage(msg);
+    }
+
     void addRenderingTaskForPlaceHolder(int page, float width, float height, RectF bounds) {
         RenderingTask task = new RenderingTask(width, height, bounds, page, false, 0, false, false);
         task.isPlaceHolder = true;
@@ -78,11 +141,35 @@ class RenderingHandler extends Handler {
 
     @Override
     public void handleMessage(Message message) {
+        if (message.what == MSG_PREFETCH_LINKS) {
+            final List<Integer> targets = pdfView.linkPrefetcher.findTargets(message.arg1, message.arg2);
+            if (running && !targets.isEmpty()) {
+                pdfView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        pdfView.prefetchPages(targets);
+                    }
+                });
+            }
+            return;
+        }
 
         RenderingTask task = (RenderingTask) message.obj;
-
+        if (!isCurrentLayout(task)) {
+            // planned against geometry which is gone, pages loader asks again for the current layout
+            postSkippedParts(task.set, task.getPartCount());
+            return;
+        }
 
         try {
+            if (task.slices != null) {
+                List<PagePart> parts = proceedSlices(task);
+                for (PagePart part : parts) {
+                    postRenderedPart(part, task);
+                }
+                postSkippedParts(task.set, task.getPartCount() - parts.size());
+                return;
+            }
             //long time01 = System.nanoTime();
             final PagePart part = proceed(task);
             //long time02 = System.nanoTime();
@@ -91,18 +178,12 @@ class RenderingHandler extends Handler {
 
 
             if (part != null) {
-                if (running) {
-                    pdfView.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            pdfView.onBitmapRendered(part);
-                        }
-                    });
-                } else {
-                    part.getRenderedBitmap().recycle();
-                }
+                postRenderedPart(part, task);
+            } else {
+                postSkippedParts(task.set, task.getPartCount());
             }
         } catch (final PageRenderingException ex) {
+            postSkippedParts(task.set, task.getPartCount());
             pdfView.post(new Runnable() {
                 @Override
                 public void run() {
@@ -112,6 +193,55 @@ class RenderingHandler extends Handler {
         }
     }
 
+    private void postRenderedPart(final PagePart part, final RenderingTask task) {
+        final int set = task.set;
+        if (running) {
+            pdfView.post(new Runnable() {
+                @Override
+                public void run() {
+                    // layout may have been replaced while rendering
+                    if (isCurrentLayout(task)) {
+                        pdfView.onBitmapRendered(part, set);
+                    } else {
+                        part.recycle();
+                        pdfView.onPartsSkipped(set, 1);
+                    }
+                }
+            });
+        } else {
+            part.recycle();
+        }
+    }
+
+    /**
+     * Let the cache know parts of given set won't come, so it doesn't wait for them
+     * before dropping parts of other levels
+     */
+    private void postSkippedParts(final int set, final int count) {
+        if (running && set != PartCache.NO_SET && count > 0) {
+            pdfView.post(new Runnable() {
+                @Override
+                public void run() {
+                    pdfView.onPartsSkipped(set, count);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return true if the page of the task still has the size it was planned for. Parts are relative
+     * to their page, so they stay valid when a layout is replaced for measured pages of a lazy layout,
+     * which moves pages but keeps size of most of them
+     */
+    private boolean isCurrentLayout(RenderingTask task) {
+        PdfFile pdfFile = pdfView.pdfFile;
+        if (pdfFile == null) {
+            return false;
+        }
+        return pdfFile.getLayoutVersion() == task.layoutVersion
+                || (pdfFile.getPageWidth(task.page) == task.pageWidth && pdfFile.getPageHeight(task.page) == task.pageHeight);
+    }
+
     private PagePart proceedPlaceHolder(RenderingTask renderingTask) throws PageRenderingException {
 
         PagePart part = new PagePart(renderingTask.page, null,
@@ -134,9 +264,17 @@ class RenderingHandler extends Handler {
             return null;
         }
         //renderingTask.bestQuality = false;
+        Bitmap.Config config = renderingTask.bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+        if (!renderingTask.thumbnail && pdfView.isTileAtlasEnabled()) {
+            PagePart part = proceedIntoAtlas(pdfFile, renderingTask, w, h, config);
+            if (part != null) {
+                return part;
+            }
+        }
+
         Bitmap render;
         try {
-            render = Bitmap.createBitmap(w, h, renderingTask.bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
+            render = Bitmap.createBitmap(w, h, config);
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Cannot create bitmap", e);
             return null;
@@ -145,9 +283,106 @@ class RenderingHandler extends Handler {
         //Log.d(TAG,  renderingTask.page + "  top:"+roundedRenderBounds.top +" bottom:" + roundedRenderBounds.bottom);
         pdfFile.renderPageBitmap(render, renderingTask.page, roundedRenderBounds, renderingTask.annotationRendering);
 
-        return new PagePart(renderingTask.page, render,
+        PagePart part = new PagePart(renderingTask.page, render,
                 renderingTask.bounds, renderingTask.thumbnail,
                 renderingTask.cacheOrder);
+        part.setLevel(renderingTask.level);
+        part.setOverview(renderingTask.overview);
+        return part;
+    }
+
+    /**
+     * Render the region covering all slices with one pdfium call, then cut it into parts
+     */
+    private List<PagePart> proceedSlices(RenderingTask renderingTask) throws PageRenderingException {
+        List<PagePart> parts = new ArrayList<>(renderingTask.slices.size());
+        PdfFile pdfFile = pdfView.pdfFile;
+        pdfFile.openPage(renderingTask.page);
+
+        RectF region = renderingTask.bounds;
+        int w = Math.round(region.width() * renderingTask.width);
+        int h = Math.round(region.height() * renderingTask.height);
+
+        if (w == 0 || h == 0 || pdfFile.pageHasError(renderingTask.page)) {
+            Log.d(TAG, "error");
+            return parts;
+        }
+        Bitmap.Config config = renderingTask.bestQuality ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+        Bitmap render;
+        try {
+            render = Bitmap.createBitmap(w, h, config);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Cannot create bitmap", e);
+            return parts;
+        }
+        calculateBounds(w, h, region);
+        pdfFile.renderPageBitmap(render, renderingTask.page, roundedRenderBounds, renderingTask.annotationRendering);
+
+        for (int i = 0; i < renderingTask.slices.size(); i++) {
+            RectF slice = renderingTask.slices.get(i);
+            int x = Math.round((slice.left - region.left) * renderingTask.width);
+            int y = Math.round((slice.top - region.top) * renderingTask.height);
+            int sliceWidth = Math.min(Math.round(slice.width() * renderingTask.width), w - x);
+            int sliceHeight = Math.min(Math.round(slice.height() * renderingTask.height), h - y);
+            if (sliceWidth <= 0 || sliceHeight <= 0) {
+                continue;
+            }
+            PagePart part = cutPart(render, x, y, sliceWidth, sliceHeight, renderingTask.page, slice,
+                    renderingTask.sliceCacheOrders[i]);
+            if (part != null) {
+                part.setLevel(renderingTask.level);
+                parts.add(part);
+            }
+        }
+        render.recycle();
+        return parts;
+    }
+
+    private PagePart cutPart(Bitmap render, int x, int y, int width, int height, int page, RectF bounds, int cacheOrder) {
+        if (pdfView.isTileAtlasEnabled()) {
+            atlasSourceRect.set(x, y, x + width, y + height);
+            AtlasSlot slot = pdfView.tileAtlas.store(render, atlasSourceRect);
+            if (slot != null) {
+                return new PagePart(page, slot, width, height, bounds, false, cacheOrder);
+            }
+        }
+        try {
+            Bitmap part = Bitmap.createBitmap(render, x, y, width, height);
+            return new PagePart(page, part, bounds, false, cacheOrder);
+        } catch (IllegalArgumentException | OutOfMemoryError e) {
+            Log.e(TAG, "Cannot create bitmap", e);
+            return null;
+        }
+    }
+
+    /**
+     * Render part into the scratch bitmap of the tile atlas and copy it into a free atlas slot
+     *
+     * @return rendered part or null if it can't be kept in the atlas
+     */
+    private PagePart proceedIntoAtlas(PdfFile pdfFile, RenderingTask renderingTask, int w, int h, Bitmap.Config config) {
+        TileAtlas tileAtlas = pdfView.tileAtlas;
+        AtlasSlot slot;
+        // view may recycle the atlas meanwhile, scratch must stay alive until it's copied
+        synchronized (tileAtlas) {
+            Bitmap scratch = tileAtlas.obtainScratch(w, h, config);
+            if (scratch == null) {
+                return null;
+            }
+            calculateBounds(w, h, renderingTask.bounds);
+            pdfFile.renderPageBitmap(scratch, renderingTask.page, roundedRenderBounds, renderingTask.annotationRendering);
+
+            atlasSourceRect.set(0, 0, w, h);
+            slot = tileAtlas.store(scratch, atlasSourceRect);
+        }
+        if (slot == null) {
+            return null;
+        }
+        PagePart part = new PagePart(renderingTask.page, slot, w, h,
+                renderingTask.bounds, renderingTask.thumbnail,
+                renderingTask.cacheOrder);
+        part.setLevel(renderingTask.level);
+        return part;
     }
 
     private void calculateBounds(int width, int height, RectF pageSliceBounds) {
@@ -181,13 +416,42 @@ class RenderingHandler extends Handler {
 
         int cacheOrder;
 
+        int level;
+
         boolean bestQuality;
 
         boolean annotationRendering;
 
         boolean isPlaceHolder = false;
 
+        boolean overview = false;
+
+        /**
+         * Page relative bounds of parts to cut from the rendered region, null for a single part task
+         */
+        List<RectF> slices;
+
+        int[] sliceCacheOrders;
+
+        /**
+         * Set of {@link CacheManager} the parts are requested by
+         */
+        int set = PartCache.NO_SET;
+
+        /**
+         * Version of the layout the task was planned against, see {@link PdfFile#getLayoutVersion()}
+         */
+        int layoutVersion;
+
+        /**
+         * Size of the page at zoom 1 in that layout
+         */
+        float pageWidth, pageHeight;
+
         RenderingTask(float width, float height, RectF bounds, int page, boolean thumbnail, int cacheOrder, boolean bestQuality, boolean annotationRendering) {
+            this.layoutVersion = pdfView.pdfFile.getLayoutVersion();
+            this.pageWidth = pdfView.pdfFile.getPageWidth(page);
+            this.pageHeight = pdfView.pdfFile.getPageHeight(page);
             this.page = page;
             this.width = width;
             this.height = height;
@@ -197,5 +461,12 @@ class RenderingHandler extends Handler {
             this.bestQuality = bestQuality;
             this.annotationRendering = annotationRendering;
         }
+
+        /**
+         * @return number of parts the task should produce
+         */
+        int getPartCount() {
+            return slices != null ? slices.size() : 1;
+        }
     }
 }
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.github.barteksc.pdfviewer.model.AtlasSlot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps rendered parts in slots of a few big bitmaps instead of one bitmap per part.
+ * <p>
+ * Pdfium always renders the page over the whole target bitmap (it fills background of the entire
+ * canvas and does not clip to the start offsets), so parts are rendered into one reusable scratch
+ * bitmap and then copied into a free slot. Atlas bitmaps are allocated lazily, when all slots
+ * of already allocated ones are taken.
+ */
+class TileAtlas {
+
+    private static final String TAG = TileAtlas.class.getName();
+
+    private final int slotSize;
+
+    private final int slotsPerSide;
+
+    /**
+     * Maximum width and height of a bitmap the view canvas can draw, until the view is drawn
+     * the texture size all devices support is assumed
+     */
+    private volatile int maxBitmapSize = 4096;
+
+    private final int maxSlots;
+
+    private final List<Bitmap> atlasBitmaps = new ArrayList<>();
+
+    private final List<AtlasSlot> slots = new ArrayList<>();
+
+    private final Canvas canvas = new Canvas();
+
+    private final Rect dstRect = new Rect();
+
+    private Bitmap.Config config;
+
+    private Bitmap scratch;
+
+    /**
+     * @param slotSize     width and height of a single slot in pixels
+     * @param slotsPerSide number of slots in every row and column of an atlas bitmap
+     * @param maxSlots     maximum number of slots, rounded up to whole atlas bitmaps
+     */
+    TileAtlas(int slotSize, int slotsPerSide, int maxSlots) {
+        this.slotSize = slotSize;
+        this.slotsPerSide = slotsPerSide;
+        this.maxSlots = maxSlots;
+    }
+
+    /**
+     * Limit size of atlas bitmaps allocated from now on to what the canvas can draw,
+     * hardware accelerated canvas can't draw bitmaps bigger than the maximum texture size
+     */
+    void setMaxBitmapSize(int maxBitmapSize) {
+        this.maxBitmapSize = maxBitmapSize;
+    }
+
+    /**
+     * Get bitmap to render a part of given size into, before it's stored with {@link #store(Bitmap, Rect)}.
+     * Caller holds the lock of the atlas until the scratch is stored, so it's not recycled meanwhile
+     *
+     * @return scratch bitmap or null if part cannot be kept in the atlas
+     */
+    synchronized Bitmap obtainScratch(int width, int height, Bitmap.Config config) {
+        if (width > slotSize || height > slotSize) {
+            return null;
+        }
+        if (this.config == null) {
+            this.config = config;
+        } else if (this.config != config) {
+            return null;
+        }
+        if (scratch == null || scratch.isRecycled()) {
+            try {
+                scratch = Bitmap.createBitmap(slotSize, slotSize, config);
+            } catch (IllegalArgumentException | OutOfMemoryError e) {
+                Log.e(TAG, "Cannot create scratch bitmap", e);
+                return null;
+            }
+        }
+        return scratch;
+    }
+
+    /**
+     * Copy given region of source bitmap into a free slot
+     *
+     * @return acquired slot or null if there is no free slot and no new atlas bitmap can be created
+     */
+    synchronized AtlasSlot store(Bitmap source, Rect sourceRect) {
+        if (sourceRect.width() > slotSize || sourceRect.height() > slotSize) {
+            return null;
+        }
+        if (config == null) {
+            config = source.getConfig();
+        } else if (source.getConfig() != config) {
+            return null;
+        }
+        AtlasSlot slot = acquireSlot();
+        if (slot == null) {
+            return null;
+        }
+        Rect bounds = slot.getBounds();
+        dstRect.set(bounds.left, bounds.top, bounds.left + sourceRect.width(), bounds.top + sourceRect.height());
+        canvas.setBitmap(slot.getBitmap());
+        canvas.drawBitmap(source, sourceRect, dstRect, null);
+        canvas.setBitmap(null);
+        return slot;
+    }
+
+    private AtlasSlot acquireSlot() {
+        for (AtlasSlot slot : slots) {
+            if (slot.tryAcquire()) {
+                return slot;
+            }
+        }
+        if (slots.size() >= maxSlots) {
+            return null;
+        }
+
+        int slotsPerSide = Math.max(1, Math.min(this.slotsPerSide, maxBitmapSize / slotSize));
+        Bitmap atlasBitmap;
+        try {
+            atlasBitmap = Bitmap.createBitmap(slotSize * slotsPerSide, slotSize * slotsPerSide, config);
+        } catch (IllegalArgumentException | OutOfMemoryError e) {
+            Log.e(TAG, "Cannot create atlas bitmap", e);
+            return null;
+        }
+        atlasBitmaps.add(atlasBitmap);
+        AtlasSlot first = null;
+        for (int row = 0; row < slotsPerSide; row++) {
+            for (int col = 0; col < slotsPerSide; col++) {
+                Rect bounds = new Rect(col * slotSize, row * slotSize, (col + 1) * slotSize, (row + 1) * slotSize);
+                AtlasSlot slot = new AtlasSlot(atlasBitmap, bounds);
+                if (first == null) {
+                    slot.tryAcquire();
+                    first = slot;
+                }
+                slots.add(slot);
+            }
+        }
+        return first;
+    }
+
+    synchronized void recycle() {
+        for (Bitmap atlasBitmap : atlasBitmaps) {
+            atlasBitmap.recycle();
+        }
+        atlasBitmaps.clear();
+        slots.clear();
+        if (scratch != null) {
+            scratch.recycle();
+            scratch = null;
+        }
+        config = null;
+    }
+}
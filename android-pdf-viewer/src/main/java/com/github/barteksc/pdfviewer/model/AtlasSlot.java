@@ -0,0 +1,67 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.model;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fixed size region of a shared atlas bitmap, holding pixels of a single {@link PagePart}
+ */
+public class AtlasSlot {
+
+    private final Bitmap bitmap;
+
+    private final Rect bounds;
+
+    private final AtomicBoolean inUse = new AtomicBoolean(false);
+
+    public AtlasSlot(Bitmap bitmap, Rect bounds) {
+        this.bitmap = bitmap;
+        this.bounds = bounds;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * Bounds of this slot in atlas bitmap coordinates
+     */
+    public Rect getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return true if slot was free and now belongs to the caller
+     */
+    public boolean tryAcquire() {
+        return inUse.compareAndSet(false, true);
+    }
+
+    /**
+     * Give slot back to the atlas, pixels may be overwritten from now on
+     */
+    public void release() {
+        inUse.set(false);
+    }
+
+    public boolean isInUse() {
+        return inUse.get();
+    }
+}
@@ -16,24 +16,46 @@
 package com.github.barteksc.pdfviewer.model;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.RectF;
 
-public class PagePart {
+import com.github.barteksc.pdfviewer.core.PartCache;
+
+public class PagePart implements PartCache.Part {
 
     private int page;
 
     private Bitmap renderedBitmap;
 
+    /**
+     * Slot of the tile atlas holding pixels of this part, null if part owns its bitmap
+     */
+    private AtlasSlot atlasSlot;
+
+    /**
+     * Region of {@link #renderedBitmap} with pixels of this part, null if it's the whole bitmap
+     */
+    private Rect sourceRect;
+
     private RectF pageRelativeBounds;
 
     private boolean thumbnail;
 
     private int cacheOrder;
 
+    /**
+     * Zoom level the parts grid was calculated for, higher is finer
+     */
+    private int level;
 
 
     private boolean isPlaceHolder = false;
 
+    /**
+     * True if it's a whole page thumbnail of the overview grid or a scrubbing preview
+     */
+    private boolean overview = false;
+
     public PagePart(int page, Bitmap renderedBitmap, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder) {
         super();
         this.page = page;
@@ -43,6 +65,13 @@ public class PagePart {
         this.cacheOrder = cacheOrder;
     }
 
+    public PagePart(int page, AtlasSlot atlasSlot, int width, int height, RectF pageRelativeBounds, boolean thumbnail, int cacheOrder) {
+        this(page, atlasSlot.getBitmap(), pageRelativeBounds, thumbnail, cacheOrder);
+        this.atlasSlot = atlasSlot;
+        Rect slotBounds = atlasSlot.getBounds();
+        this.sourceRect = new Rect(slotBounds.left, slotBounds.top, slotBounds.left + width, slotBounds.top + height);
+    }
+
     public boolean isPlaceHolder() {
         return isPlaceHolder;
     }
@@ -52,10 +81,29 @@ public class PagePart {
     }
 
 
+    public boolean isOverview() {
+        return overview;
+    }
+
+    public void setOverview(boolean overview) {
+        this.overview = overview;
+    }
+
+    @Override
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    @Override
     public int getCacheOrder() {
         return cacheOrder;
     }
 
+    @Override
     public int getPage() {
         return page;
     }
@@ -64,6 +112,10 @@ public class PagePart {
         return renderedBitmap;
     }
 
+    public Rect getSourceRect() {
+        return sourceRect;
+    }
+
     public RectF getPageRelativeBounds() {
         return pageRelativeBounds;
     }
@@ -72,10 +124,33 @@ public class PagePart {
         return thumbnail;
     }
 
+    @Override
     public void setCacheOrder(int cacheOrder) {
         this.cacheOrder = cacheOrder;
     }
 
+    /**
+     * Free pixels of this part, either by giving atlas slot back or by recycling own bitmap
+     */
+    @Override
+    public void recycle() {
+        if (atlasSlot != null) {
+            atlasSlot.release();
+            atlasSlot = null;
+        } else if (renderedBitmap != null) {
+            renderedBitmap.recycle();
+        }
+    }
+
+    @Override
+    public boolean isAt(int page, float left, float top, float right, float bottom) {
+        return this.page == page
+                && pageRelativeBounds.left == left
+                && pageRelativeBounds.right == right
+                && pageRelativeBounds.top == top
+                && pageRelativeBounds.bottom == bottom;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof PagePart)) {
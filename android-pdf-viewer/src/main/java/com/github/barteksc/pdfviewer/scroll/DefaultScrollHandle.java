@@ -213,6 +213,7 @@ public class DefaultScrollHandle extends RelativeLayout implements ScrollHandle
             case MotionEvent.ACTION_DOWN:
             case MotionEvent.ACTION_POINTER_DOWN:
                 pdfView.stopFling();
+                pdfView.startScrubbing();
                 handler.removeCallbacks(hidePageScrollerRunnable);
                 if (pdfView.isSwipeVertical()) {
                     currentPos = event.getRawY() - getY();
@@ -228,10 +229,13 @@ public class DefaultScrollHandle extends RelativeLayout implements ScrollHandle
                     pdfView.setPositionOffset(relativeHandlerMiddle / (float) getWidth(), false);
                 }
                 return true;
+            case MotionEvent.ACTION_POINTER_UP:
+                // another finger still drags the handle
+                return true;
             case MotionEvent.ACTION_CANCEL:
             case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_POINTER_UP:
                 hideDelayed();
+                pdfView.stopScrubbing();
                 pdfView.performPageSnap();
                 return true;
         }
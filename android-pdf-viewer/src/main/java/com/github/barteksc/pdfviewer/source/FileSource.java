@@ -32,6 +32,10 @@ public class FileSource implements DocumentSource {
         this.file = file;
     }
 
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
         ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
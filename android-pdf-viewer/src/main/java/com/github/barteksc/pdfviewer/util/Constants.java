@@ -22,6 +22,9 @@ public class Constants {
     /** Between 0 and 1, the thumbnails quality (default 0.3). Increasing this value may cause performance decrease */
     public static float THUMBNAIL_RATIO = 0.3f;
 
+    /** Between 0 and 1, quality of page previews rendered while scrubbing with the scroll handle (default 0.1) */
+    public static float SCRUB_THUMBNAIL_RATIO = 0.1f;
+
     /**
      * The size of the rendered parts (default 256)
      * Tinier : a little bit slower to have the whole page rendered but more reactive.
@@ -29,15 +32,93 @@ public class Constants {
      */
     public static float PART_SIZE = 1024+512;
 
+    /**
+     * Ratio between neighbouring zoom levels parts are rendered at. Parts rendered at the nearest level
+     * are scaled while drawing, so small zoom changes reuse cached parts
+     */
+    public static float ZOOM_LEVEL_STEP = (float) Math.sqrt(2);
+
     /** Part of document above and below screen that should be preloaded, in dp */
     public static int PRELOAD_OFFSET = 20;
 
+    /**
+     * While scrolling, preload is extended in the scroll direction by the distance
+     * travelled at current velocity in this time, in milliseconds. Behind the screen it shrinks to 0
+     */
+    public static int PRELOAD_LOOKAHEAD_TIME = 300;
+
+    /** Maximum preload in the scroll direction, as a ratio of the screen length */
+    public static float PRELOAD_MAX_SCREENS = 1.5f;
+
+    /**
+     * Maximum share of the part cache the lookahead in the scroll direction may take. It's loaded
+     * after the screen and never takes more than the screen left of {@link Cache#CACHE_SIZE}
+     */
+    public static float PRELOAD_MAX_CACHE_SHARE = 0.5f;
+
+    /** Scroll velocity is reset when the document did not move for this time, in milliseconds */
+    public static int VELOCITY_TIMEOUT = 100;
+
+    /** Between 0 and 1, weight of the newest sample in the smoothed scroll velocity */
+    public static float VELOCITY_SMOOTHING = 0.3f;
+
+    /**
+     * Maximum number of pixels of a page region rendered with a single pdfium call,
+     * when single pass rendering is enabled, about two parts. Cells which don't fit are grouped
+     * into more regions, so the temporary bitmap is never much bigger than the parts cut from it
+     */
+    public static int SINGLE_PASS_MAX_PIXELS = 1536 * 1536 * 2;
+
+    /** Maximum number of link and outline destinations prefetched for the visible pages */
+    public static int LINK_PREFETCH_MAX_TARGETS = 4;
+
+    /** Maximum number of parts of the first viewport prefetched for every link destination */
+    public static int LINK_PREFETCH_MAX_PARTS = 4;
+
+    /** With lazy layout, number of pages before and after the default page measured while loading */
+    public static int LAZY_LAYOUT_INITIAL_PAGES = 16;
+
+    /** With lazy layout, number of pages measured in background at once */
+    public static int LAZY_LAYOUT_CHUNK_SIZE = 256;
+
+    /** Layout for a new view size is calculated after the size did not change for this time, in milliseconds */
+    public static int LAYOUT_DEBOUNCE_DELAY = 100;
+
+    /** Number of pages in a row of the overview grid when it's opened with a pinch */
+    public static int OVERVIEW_DEFAULT_COLUMNS = 4;
+
+    /** Bounds of the number of pages in a row of the overview grid */
+    public static int OVERVIEW_MIN_COLUMNS = 2;
+
+    public static int OVERVIEW_MAX_COLUMNS = 6;
+
+    /** Space around every page of the overview grid, in dp */
+    public static int OVERVIEW_PADDING = 4;
+
+    /** Rows of the overview grid above and below the screen which should be preloaded */
+    public static int OVERVIEW_PRELOAD_ROWS = 1;
+
+    /** Scale of a pinch gesture which adds or removes one column of the overview grid */
+    public static float OVERVIEW_PINCH_STEP = 1.3f;
+
     public static class Cache {
 
         /** The size of the cache (number of bitmaps kept) */
         public static int CACHE_SIZE = 120 * 2;
 
         public static int THUMBNAILS_CACHE_SIZE = 8;
+
+        /** Number of page thumbnails kept for the overview grid */
+        public static int OVERVIEW_CACHE_SIZE = 160;
+
+        /** Maximum number of pages with open native handle, least recently used pages are closed above it */
+        public static int MAX_OPENED_PAGES = 32;
+
+        /**
+         * Number of part slots in every row and column of a tile atlas bitmap,
+         * lowered when the canvas can't draw such a big bitmap
+         */
+        public static int ATLAS_SLOTS_PER_SIDE = 4;
     }
 
     public static class Pinch {
@@ -46,6 +127,9 @@ public class Constants {
 
         public static float MINIMUM_ZOOM = 1;
 
+        /** Maximum zoom when deep zoom tiling is enabled */
+        public static float DEEP_ZOOM_MAXIMUM_ZOOM = 100;
+
     }
 
 }
@@ -15,47 +15,42 @@
  */
 package com.github.barteksc.pdfviewer.util;
 
-import android.util.Log;
-
+import com.github.barteksc.pdfviewer.core.PageFit;
 import com.shockwave.pdfium.util.Size;
 import com.shockwave.pdfium.util.SizeF;
 
+/**
+ * {@link PageFit} taking and returning pdfium sizes
+ */
 public class PageSizeCalculator {
 
-    private FitPolicy fitPolicy;
-    private final Size originalMaxWidthPageSize;
-    private final Size originalMaxHeightPageSize;
-    private final Size viewSize;
-    private SizeF optimalMaxWidthPageSize;
-    private SizeF optimalMaxHeightPageSize;
-    private float widthRatio;
-    private float heightRatio;
-    private boolean fitEachPage;
+    private final PageFit pageFit;
+    private final SizeF optimalMaxWidthPageSize;
+    private final SizeF optimalMaxHeightPageSize;
 
     public PageSizeCalculator(FitPolicy fitPolicy, Size originalMaxWidthPageSize, Size originalMaxHeightPageSize,
                               Size viewSize, boolean fitEachPage) {
-        this.fitPolicy = fitPolicy;
-        this.originalMaxWidthPageSize = originalMaxWidthPageSize;
-        this.originalMaxHeightPageSize = originalMaxHeightPageSize;
-        this.viewSize = viewSize;
-        this.fitEachPage = fitEachPage;
-        calculateMaxPages();
+        this.pageFit = new PageFit(fitPolicy,
+                originalMaxWidthPageSize.getWidth(), originalMaxWidthPageSize.getHeight(),
+                originalMaxHeightPageSize.getWidth(), originalMaxHeightPageSize.getHeight(),
+                viewSize.getWidth(), viewSize.getHeight(), fitEachPage);
+        this.optimalMaxWidthPageSize = new SizeF(pageFit.getOptimalMaxWidthPageWidth(), pageFit.getOptimalMaxWidthPageHeight());
+        this.optimalMaxHeightPageSize = new SizeF(pageFit.getOptimalMaxHeightPageWidth(), pageFit.getOptimalMaxHeightPageHeight());
     }
 
     public SizeF calculate(Size pageSize) {
-        if (pageSize.getWidth() <= 0 || pageSize.getHeight() <= 0) {
-            return new SizeF(0, 0);
-        }
-        float maxWidth = fitEachPage ? viewSize.getWidth() : pageSize.getWidth() * widthRatio;
-        float maxHeight = fitEachPage ? viewSize.getHeight() : pageSize.getHeight() * heightRatio;
-        switch (fitPolicy) {
-            case HEIGHT:
-                return fitHeight(pageSize, maxHeight);
-            case BOTH:
-                return fitBoth(pageSize, maxWidth, maxHeight);
-            default:
-                return fitWidth(pageSize, maxWidth);
-        }
+        float[] width = new float[1];
+        float[] height = new float[1];
+        pageFit.calculate(pageSize.getWidth(), pageSize.getHeight(), width, height, 0);
+        return new SizeF(width[0], height[0]);
+    }
+
+    /**
+     * Same as {@link #calculate(Size)}, but stores the result at given index
+     * of the arrays instead of allocating a new size
+     */
+    public void calculate(int width, int height, float[] widths, float[] heights, int index) {
+        pageFit.calculate(width, height, widths, heights, index);
     }
 
     public SizeF getOptimalMaxWidthPageSize() {
@@ -66,59 +61,4 @@ public class PageSizeCalculator {
         return optimalMaxHeightPageSize;
     }
 
-    private void calculateMaxPages() {
-        switch (fitPolicy) {
-            case HEIGHT:
-                optimalMaxHeightPageSize = fitHeight(originalMaxHeightPageSize, viewSize.getHeight());
-                heightRatio = optimalMaxHeightPageSize.getHeight() / originalMaxHeightPageSize.getHeight();
-                optimalMaxWidthPageSize = fitHeight(originalMaxWidthPageSize, originalMaxWidthPageSize.getHeight() * heightRatio);
-                break;
-            case BOTH:
-                SizeF localOptimalMaxWidth = fitBoth(originalMaxWidthPageSize, viewSize.getWidth(), viewSize.getHeight());
-                float localWidthRatio = localOptimalMaxWidth.getWidth() / originalMaxWidthPageSize.getWidth();
-                //SizeF optimalMaxHeightPageSize2 = fitHeight(originalMaxHeightPageSize, viewSize.getHeight());
-                //SizeF optimalMaxWidthPageSize3 = fitWidth(originalMaxWidthPageSize, viewSize.getWidth());
-                this.optimalMaxHeightPageSize = fitBoth(originalMaxHeightPageSize, originalMaxHeightPageSize.getWidth() * localWidthRatio,
-                        viewSize.getHeight());
-                heightRatio = optimalMaxHeightPageSize.getHeight() / originalMaxHeightPageSize.getHeight();
-                optimalMaxWidthPageSize = fitBoth(originalMaxWidthPageSize, viewSize.getWidth(), originalMaxWidthPageSize.getHeight() * heightRatio);
-                widthRatio = optimalMaxWidthPageSize.getWidth() / originalMaxWidthPageSize.getWidth();
-                //Log.d("YYY","optimalMaxWidthPageSize ="+optimalMaxWidthPageSize.getHeight()+ " optimalMaxHeightPageSize2="+optimalMaxHeightPageSize2.getHeight() +  " optimalMaxWidthPageSize3:"+optimalMaxWidthPageSize3.getHeight());
-                break;
-            default:
-                optimalMaxWidthPageSize = fitWidth(originalMaxWidthPageSize, viewSize.getWidth());
-                widthRatio = optimalMaxWidthPageSize.getWidth() / originalMaxWidthPageSize.getWidth();
-                optimalMaxHeightPageSize = fitWidth(originalMaxHeightPageSize, originalMaxHeightPageSize.getWidth() * widthRatio);
-                break;
-        }
-    }
-
-    private SizeF fitWidth(Size pageSize, float maxWidth) {
-        float w = pageSize.getWidth(), h = pageSize.getHeight();
-        float ratio = w / h;
-        w = maxWidth;
-        h = (float) Math.floor(maxWidth / ratio);
-        return new SizeF(w, h);
-    }
-
-    private SizeF fitHeight(Size pageSize, float maxHeight) {
-        float w = pageSize.getWidth(), h = pageSize.getHeight();
-        float ratio = h / w;
-        h = maxHeight;
-        w = (float) Math.floor(maxHeight / ratio);
-        return new SizeF(w, h);
-    }
-
-    private SizeF fitBoth(Size pageSize, float maxWidth, float maxHeight) {
-        float w = pageSize.getWidth(), h = pageSize.getHeight();
-        float ratio = w / h;
-        w = maxWidth;
-        h = (float) Math.floor(maxWidth / ratio);
-        if (h > maxHeight) {
-            h = maxHeight;
-            w = (float) Math.floor(maxHeight * ratio);
-        }
-        return new SizeF(w, h);
-    }
-
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two documents of two views opening and measuring pages at the same time, each on its own thread,
+ * with a lock per document, as PdfFile has it, against one lock shared by all documents, as it was before.
+ * Native calls are simulated by a fixed amount of work. PdfiumCore serializes them with one process wide
+ * lock, which can be switched off to see the contention of the document locks alone
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DocumentLockBenchmark {
+
+    /**
+     * Work of a native page open and of a page size read
+     */
+    private static final long OPEN_TOKENS = 2000;
+    private static final long SIZE_TOKENS = 200;
+    /**
+     * Pages cycled through, more than the opened pages limit, so pages are closed and opened again
+     */
+    private static final int PAGES = 64;
+    private static final int MAX_OPENED_PAGES = 32;
+
+    @Param({"false", "true"})
+    public boolean sharedLock;
+
+    @Param({"false", "true"})
+    public boolean pdfiumLock;
+
+    private Document first;
+    private Document second;
+
+    @Setup
+    public void setup() {
+        Object shared = new Object();
+        Object nativeLock = pdfiumLock ? new Object() : null;
+        first = new Document(sharedLock ? shared : new Object(), nativeLock);
+        second = new Document(sharedLock ? shared : new Object(), nativeLock);
+    }
+
+    @Benchmark
+    @Group("twoDocuments")
+    @GroupThreads(1)
+    public int firstDocument() {
+        return first.openAndMeasureNextPage();
+    }
+
+    @Benchmark
+    @Group("twoDocuments")
+    @GroupThreads(1)
+    public int secondDocument() {
+        return second.openAndMeasureNextPage();
+    }
+
+    /**
+     * Bookkeeping of opened pages as done by PdfFile, the document lock is held over native calls
+     */
+    private static class Document {
+        private final Object lock;
+        private final Object nativeLock;
+        private final LinkedHashMap<Integer, Boolean> openedPagesLru = new LinkedHashMap<>(16, 0.75f, true);
+        private int nextPage;
+
+        Document(Object lock, Object nativeLock) {
+            this.lock = lock;
+            this.nativeLock = nativeLock;
+        }
+
+        int openAndMeasureNextPage() {
+            int page = nextPage;
+            nextPage = (nextPage + 1) % PAGES;
+            synchronized (lock) {
+                if (openedPagesLru.get(page) == null) {
+                    callNative(OPEN_TOKENS);
+                    openedPagesLru.put(page, true);
+                    Iterator<Integer> iterator = openedPagesLru.keySet().iterator();
+                    while (openedPagesLru.size() > MAX_OPENED_PAGES && iterator.hasNext()) {
+                        iterator.next();
+                        iterator.remove();
+                    }
+                }
+            }
+            synchronized (lock) {
+                callNative(SIZE_TOKENS);
+            }
+            return page;
+        }
+
+        private void callNative(long tokens) {
+            if (nativeLock == null) {
+                Blackhole.consumeCPU(tokens);
+                return;
+            }
+            synchronized (nativeLock) {
+                Blackhole.consumeCPU(tokens);
+            }
+        }
+    }
+}
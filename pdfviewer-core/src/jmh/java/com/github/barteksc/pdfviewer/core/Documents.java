@@ -0,0 +1,109 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+import java.util.Random;
+
+/**
+ * Generated documents shared by benchmarks. Most pages are A4 portrait, some are landscape
+ * or smaller, like scanned books with inserts
+ */
+class Documents {
+
+    static final int VIEW_WIDTH = 1080;
+    static final int VIEW_HEIGHT = 1920;
+    static final int SPACING = 10;
+    static final float PART_SIZE = 1024 + 512;
+
+    final int[] originalWidths;
+    final int[] originalHeights;
+    final float[] pageWidths;
+    final float[] pageHeights;
+    final float[] pageOffsets;
+    final float[] pageStarts;
+    final float documentLength;
+    /**
+     * Widest and highest page
+     */
+    final int maxWidthIndex;
+    final int maxHeightIndex;
+
+    Documents(int pageCount, long seed) {
+        Random random = new Random(seed);
+        originalWidths = new int[pageCount];
+        originalHeights = new int[pageCount];
+        int maxWidthIndex = 0;
+        int maxHeightIndex = 0;
+        for (int i = 0; i < pageCount; i++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                originalWidths[i] = 842;
+                originalHeights[i] = 595;
+            } else if (kind == 1) {
+                originalWidths[i] = 420 + random.nextInt(100);
+                originalHeights[i] = 595 + random.nextInt(100);
+            } else {
+                originalWidths[i] = 595;
+                originalHeights[i] = 842;
+            }
+            if (originalWidths[i] > originalWidths[maxWidthIndex]) {
+                maxWidthIndex = i;
+            }
+            if (originalHeights[i] > originalHeights[maxHeightIndex]) {
+                maxHeightIndex = i;
+            }
+        }
+        this.maxWidthIndex = maxWidthIndex;
+        this.maxHeightIndex = maxHeightIndex;
+        PageFit pageFit = newPageFit();
+        pageWidths = new float[pageCount];
+        pageHeights = new float[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageFit.calculate(originalWidths[i], originalHeights[i], pageWidths, pageHeights, i);
+        }
+        pageOffsets = new float[pageCount];
+        pageStarts = new float[pageCount];
+        PageLayout.pageOffsets(pageWidths, pageHeights, true, null, SPACING, pageOffsets, pageStarts);
+        documentLength = PageLayout.documentLength(pageWidths, pageHeights, true, null, SPACING);
+    }
+
+    PageFit newPageFit() {
+        return new PageFit(FitPolicy.WIDTH,
+                originalWidths[maxWidthIndex], originalHeights[maxWidthIndex],
+                originalWidths[maxHeightIndex], originalHeights[maxHeightIndex],
+                VIEW_WIDTH, VIEW_HEIGHT, false);
+    }
+
+    /**
+     * @return offsets evenly spread over the document at given zoom, shuffled
+     */
+    float[] offsets(int count, float zoom, long seed) {
+        Random random = new Random(seed);
+        float[] offsets = new float[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = documentLength * zoom * i / count;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            float offset = offsets[i];
+            offsets[i] = offsets[j];
+            offsets[j] = offset;
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory per page of the layout model: lists of size objects and boxed floats, as PdfFile kept them
+ * before, against primitive arrays. Every operation is one page, so <i>gc.alloc.rate.norm</i>
+ * of the gc profiler is the number of bytes a page takes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LayoutFootprintBenchmark {
+
+    static final int PAGES = 10000;
+
+    private Documents document;
+
+    @Setup
+    public void setup() {
+        document = new Documents(PAGES, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public Object boxedLayout() {
+        List<IntSize> originalPageSizes = new ArrayList<>(PAGES);
+        List<FloatSize> pageSizes = new ArrayList<>(PAGES);
+        List<Float> pageOffsets = new ArrayList<>(PAGES);
+        List<Float> pageSpacing = new ArrayList<>(PAGES);
+        for (int i = 0; i < PAGES; i++) {
+            originalPageSizes.add(new IntSize(document.originalWidths[i], document.originalHeights[i]));
+            pageSizes.add(new FloatSize(document.pageWidths[i], document.pageHeights[i]));
+            pageOffsets.add(document.pageOffsets[i]);
+            pageSpacing.add((float) Documents.SPACING);
+        }
+        return new Object[]{originalPageSizes, pageSizes, pageOffsets, pageSpacing};
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public Object primitiveLayout() {
+        int[] originalWidths = new int[PAGES];
+        int[] originalHeights = new int[PAGES];
+        float[] pageWidths = new float[PAGES];
+        float[] pageHeights = new float[PAGES];
+        float[] pageOffsets = new float[PAGES];
+        float[] pageSpacing = new float[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            originalWidths[i] = document.originalWidths[i];
+            originalHeights[i] = document.originalHeights[i];
+            pageWidths[i] = document.pageWidths[i];
+            pageHeights[i] = document.pageHeights[i];
+            pageOffsets[i] = document.pageOffsets[i];
+            pageSpacing[i] = Documents.SPACING;
+        }
+        return new Object[]{originalWidths, originalHeights, pageWidths, pageHeights, pageOffsets, pageSpacing};
+    }
+
+    /**
+     * Same fields as android.util.Size
+     */
+    private static final class IntSize {
+        final int width;
+        final int height;
+
+        IntSize(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Same fields as android.util.SizeF
+     */
+    private static final class FloatSize {
+        final float width;
+        final float height;
+
+        FloatSize(float width, float height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layout of a whole document after a view size change, page lookup while scrolling
+ * and pairing of pages into spreads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageLayoutBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    /**
+     * Document sizes of the load time measurements
+     */
+    @Param({"1000", "10000", "100000"})
+    public int pageCount;
+
+    private Documents document;
+    private BitSet breaks;
+    private int[] leftPages;
+    private int[] rightPages;
+
+    @Setup
+    public void setup() {
+        document = new Documents(pageCount, 42);
+        // a break every chapter of about 20 pages, as in a manga volume
+        breaks = new BitSet(pageCount + 1);
+        breaks.set(1);
+        for (int page = 21; page <= pageCount; page += 20) {
+            breaks.set(page);
+        }
+        leftPages = new int[pageCount];
+        rightPages = new int[pageCount];
+    }
+
+    @Benchmark
+    public float layout() {
+        PageFit pageFit = document.newPageFit();
+        float[] widths = new float[pageCount];
+        float[] heights = new float[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageFit.calculate(document.originalWidths[i], document.originalHeights[i], widths, heights, i);
+        }
+        float[] pageSpacing = PageLayout.autoSpacing(widths, heights, true,
+                Documents.VIEW_WIDTH, Documents.VIEW_HEIGHT, Documents.SPACING);
+        float[] pageOffsets = new float[pageCount];
+        float[] pageStarts = new float[pageCount];
+        PageLayout.pageOffsets(widths, heights, true, pageSpacing, Documents.SPACING, pageOffsets, pageStarts);
+        return PageLayout.documentLength(widths, heights, true, pageSpacing, Documents.SPACING);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void pageAtOffset(Lookups lookups, Blackhole blackhole) {
+        for (float offset : lookups.offsets) {
+            blackhole.consume(PageLayout.pageAtOffset(document.pageStarts, offset, lookups.zoom));
+        }
+    }
+
+    @Benchmark
+    public int pairSpreadsRtl() {
+        return PageLayout.pairSpreads(pageCount, breaks, true, leftPages, rightPages);
+    }
+
+    /**
+     * Scroll offsets of the lookups, only page lookup depends on zoom, so other benchmarks aren't repeated for it
+     */
+    @State(Scope.Benchmark)
+    public static class Lookups {
+
+        @Param({"1", "3", "10"})
+        public float zoom;
+
+        private float[] offsets;
+
+        @Setup
+        public void setup(PageLayoutBenchmark benchmark) {
+            offsets = benchmark.document.offsets(LOOKUPS, zoom, 7);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache work of one set while scrolling: parts of the viewport are looked up, missing ones
+ * are added as if rendered, evicting passive parts of the previous viewports
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PartCacheBenchmark {
+
+    /**
+     * Maximum number of cached parts, 240 is the default of the view
+     */
+    @Param({"240", "960"})
+    public int capacity;
+
+    /**
+     * Parts of the viewport, it shows two pages
+     */
+    @Param({"24", "96"})
+    public int partsPerSet;
+
+    private PartCache<TestPart> cache;
+    private int firstPage;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        cache = new PartCache<>(capacity);
+        firstPage = 0;
+    }
+
+    @Benchmark
+    public int scrollOneSet() {
+        int set = cache.makeANewSet();
+        // viewport moves by one page, so half of its parts are cached
+        firstPage++;
+        int pending = 0;
+        int order = 1;
+        int partsPerPage = partsPerSet / 2;
+        int cols = (int) Math.ceil(Math.sqrt(partsPerPage));
+        for (int i = 0; i < partsPerSet; i++) {
+            int page = firstPage + i / partsPerPage;
+            int cell = i % partsPerPage;
+            float left = (cell % cols) / (float) cols;
+            float top = (cell / cols) / (float) cols;
+            float right = left + 1f / cols;
+            float bottom = top + 1f / cols;
+            if (!cache.upPartIfContained(page, 0, left, top, right, bottom, order)) {
+                cache.add(new TestPart(page, 0, order, left, top, right, bottom), set);
+                pending++;
+            }
+            order++;
+        }
+        cache.setRequestedLevel(set, 0, 0);
+        return pending;
+    }
+
+    private static class TestPart implements PartCache.Part {
+        private final int page;
+        private final int level;
+        private int cacheOrder;
+        private final float left, top, right, bottom;
+
+        TestPart(int page, int level, int cacheOrder, float left, float top, float right, float bottom) {
+            this.page = page;
+            this.level = level;
+            this.cacheOrder = cacheOrder;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        @Override
+        public int getPage() {
+            return page;
+        }
+
+        @Override
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public int getCacheOrder() {
+            return cacheOrder;
+        }
+
+        @Override
+        public void setCacheOrder(int cacheOrder) {
+            this.cacheOrder = cacheOrder;
+        }
+
+        @Override
+        public boolean isAt(int page, float left, float top, float right, float bottom) {
+            return this.page == page && this.left == left && this.top == top
+                    && this.right == right && this.bottom == bottom;
+        }
+
+        @Override
+        public void recycle() {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import com.github.barteksc.pdfviewer.util.MathUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning parts of the viewport, as done on every scroll: pages at the viewport, their grids
+ * at the render level of the zoom, see {@link TileGrid.PageGrid}, and bounds of visible cells
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TileGridBenchmark {
+
+    private static final int VIEWPORTS = 256;
+
+    @Param({"100", "5000", "50000"})
+    public int pageCount;
+
+    @Param({"1", "3", "10"})
+    public float zoom;
+
+    @Param({"false", "true"})
+    public boolean deepZoom;
+
+    private Documents document;
+    private float[] offsets;
+    private final TileGrid.PageGrid grid = new TileGrid.PageGrid();
+    private final float[] cellBounds = new float[4];
+
+    @Setup
+    public void setup() {
+        document = new Documents(pageCount, 42);
+        offsets = document.offsets(VIEWPORTS, zoom, 7);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VIEWPORTS)
+    public int planViewport() {
+        float levelStep = deepZoom ? 2 : (float) Math.sqrt(2);
+        float renderZoom = MathUtils.levelZoom(MathUtils.zoomLevel(zoom, levelStep), levelStep);
+        float maxPageWidth = document.pageWidths[document.maxWidthIndex] * zoom;
+        int cells = 0;
+        for (float viewTop : offsets) {
+            float viewBottom = viewTop + Documents.VIEW_HEIGHT;
+            int firstPage = PageLayout.pageAtOffset(document.pageStarts, viewTop, zoom);
+            int lastPage = PageLayout.pageAtOffset(document.pageStarts, viewBottom, zoom);
+            for (int page = firstPage; page <= lastPage; page++) {
+                cells += planPage(page, viewTop, viewBottom, maxPageWidth, renderZoom);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Same planning as the pages loader does for a page of the viewport, scrolled to the left edge
+     */
+    private int planPage(int page, float viewTop, float viewBottom, float maxPageWidth, float renderZoom) {
+        float pageWidth = document.pageWidths[page];
+        float pageHeight = document.pageHeights[page];
+        grid.plan(pageWidth, pageHeight, renderZoom, Documents.PART_SIZE, deepZoom);
+        float pageTop = document.pageOffsets[page] * zoom;
+        float secondaryOffset = (maxPageWidth - pageWidth * zoom) / 2;
+        grid.setVisibleRange(pageWidth * zoom, pageHeight * zoom, -secondaryOffset, viewTop - pageTop,
+                Documents.VIEW_WIDTH - secondaryOffset, viewBottom - pageTop);
+
+        int cells = 0;
+        for (int row = grid.firstRow; row <= grid.lastRow; row++) {
+            for (int col = grid.firstCol; col <= grid.lastCol; col++) {
+                if (TileGrid.cellBounds(row, col, grid.relativePartWidth, grid.relativePartHeight,
+                        grid.renderWidth, grid.renderHeight, cellBounds)) {
+                    cells++;
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import com.github.barteksc.pdfviewer.util.FitPolicy;
+
+/**
+ * Scales pages to the view according to {@link FitPolicy}. Pages are scaled relative to the widest
+ * and the highest page of the document, or each page on its own if fitEachPage is set
+ */
+public class PageFit {
+
+    private final FitPolicy fitPolicy;
+    private final int viewWidth;
+    private final int viewHeight;
+    private final boolean fitEachPage;
+    private float widthRatio;
+    private float heightRatio;
+    /**
+     * Scaled size of the widest and the highest page
+     */
+    private final float[] optimalMaxWidthPageSize = new float[2];
+    private final float[] optimalMaxHeightPageSize = new float[2];
+
+    public PageFit(FitPolicy fitPolicy, int maxWidthPageWidth, int maxWidthPageHeight,
+                   int maxHeightPageWidth, int maxHeightPageHeight,
+                   int viewWidth, int viewHeight, boolean fitEachPage) {
+        this.fitPolicy = fitPolicy;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.fitEachPage = fitEachPage;
+        calculateMaxPages(maxWidthPageWidth, maxWidthPageHeight, maxHeightPageWidth, maxHeightPageHeight);
+    }
+
+    /**
+     * Scale a page and store its size at given index of the arrays, zero size pages stay zero
+     */
+    public void calculate(int width, int height, float[] widths, float[] heights, int index) {
+        if (width <= 0 || height <= 0) {
+            widths[index] = 0;
+            heights[index] = 0;
+            return;
+        }
+        float maxWidth = fitEachPage ? viewWidth : width * widthRatio;
+        float maxHeight = fitEachPage ? viewHeight : height * heightRatio;
+        float ratio = (float) width / height;
+        float w, h;
+        switch (fitPolicy) {
+            case HEIGHT:
+                h = maxHeight;
+                w = (float) Math.floor(maxHeight / ((float) height / width));
+                break;
+            case BOTH:
+                w = maxWidth;
+                h = (float) Math.floor(maxWidth / ratio);
+                if (h > maxHeight) {
+                    h = maxHeight;
+                    w = (float) Math.floor(maxHeight * ratio);
+                }
+                break;
+            default:
+                w = maxWidth;
+                h = (float) Math.floor(maxWidth / ratio);
+                break;
+        }
+        widths[index] = w;
+        heights[index] = h;
+    }
+
+    public float getOptimalMaxWidthPageWidth() {
+        return optimalMaxWidthPageSize[0];
+    }
+
+    public float getOptimalMaxWidthPageHeight() {
+        return optimalMaxWidthPageSize[1];
+    }
+
+    public float getOptimalMaxHeightPageWidth() {
+        return optimalMaxHeightPageSize[0];
+    }
+
+    public float getOptimalMaxHeightPageHeight() {
+        return optimalMaxHeightPageSize[1];
+    }
+
+    private void calculateMaxPages(int maxWidthPageWidth, int maxWidthPageHeight,
+                                   int maxHeightPageWidth, int maxHeightPageHeight) {
+        switch (fitPolicy) {
+            case HEIGHT:
+                fitHeight(maxHeightPageWidth, maxHeightPageHeight, viewHeight, optimalMaxHeightPageSize);
+                heightRatio = optimalMaxHeightPageSize[1] / maxHeightPageHeight;
+                fitHeight(maxWidthPageWidth, maxWidthPageHeight, maxWidthPageHeight * heightRatio, optimalMaxWidthPageSize);
+                break;
+            case BOTH:
+                float[] localOptimalMaxWidth = new float[2];
+                fitBoth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, viewHeight, localOptimalMaxWidth);
+                float localWidthRatio = localOptimalMaxWidth[0] / maxWidthPageWidth;
+                fitBoth(maxHeightPageWidth, maxHeightPageHeight, maxHeightPageWidth * localWidthRatio, viewHeight,
+                        optimalMaxHeightPageSize);
+                heightRatio = optimalMaxHeightPageSize[1] / maxHeightPageHeight;
+                fitBoth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, maxWidthPageHeight * heightRatio,
+                        optimalMaxWidthPageSize);
+                widthRatio = optimalMaxWidthPageSize[0] / maxWidthPageWidth;
+                break;
+            default:
+                fitWidth(maxWidthPageWidth, maxWidthPageHeight, viewWidth, optimalMaxWidthPageSize);
+                widthRatio = optimalMaxWidthPageSize[0] / maxWidthPageWidth;
+                fitWidth(maxHeightPageWidth, maxHeightPageHeight, maxHeightPageWidth * widthRatio, optimalMaxHeightPageSize);
+                break;
+        }
+    }
+
+    private static void fitWidth(float w, float h, float maxWidth, float[] size) {
+        float ratio = w / h;
+        size[0] = maxWidth;
+        size[1] = (float) Math.floor(maxWidth / ratio);
+    }
+
+    private static void fitHeight(float w, float h, float maxHeight, float[] size) {
+        float ratio = h / w;
+        size[0] = (float) Math.floor(maxHeight / ratio);
+        size[1] = maxHeight;
+    }
+
+    private static void fitBoth(float w, float h, float maxWidth, float maxHeight, float[] size) {
+        float ratio = w / h;
+        w = maxWidth;
+        h = (float) Math.floor(maxWidth / ratio);
+        if (h > maxHeight) {
+            h = maxHeight;
+            w = (float) Math.floor(maxHeight * ratio);
+        }
+        size[0] = w;
+        size[1] = h;
+    }
+}
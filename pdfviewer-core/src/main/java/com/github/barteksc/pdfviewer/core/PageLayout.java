@@ -0,0 +1,181 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Placement of scaled pages along the swipe axis, all lengths are at zoom 1.
+ * Page sizes are passed as arrays of widths and heights, the axis is chosen by the vertical flag
+ */
+public class PageLayout {
+
+    private PageLayout() {
+        // Prevents instantiation
+    }
+
+    /**
+     * @param spacing spacing between pages
+     * @return spacing after every page, so each page with half of spacing on both sides fills the view
+     */
+    public static float[] autoSpacing(float[] pageWidths, float[] pageHeights, boolean vertical,
+                                      int viewWidth, int viewHeight, int spacing) {
+        int pagesCount = pageWidths.length;
+        float[] pageSpacing = new float[pagesCount];
+        for (int i = 0; i < pagesCount; i++) {
+            float space = Math.max(0, vertical ? viewHeight - pageHeights[i] : viewWidth - pageWidths[i]);
+            if (i < pagesCount - 1) {
+                space += spacing;
+            }
+            pageSpacing[i] = space;
+        }
+        return pageSpacing;
+    }
+
+    /**
+     * @param pageSpacing spacing after every page, see {@link #autoSpacing}, null if pages are
+     *                    separated by the same spacing
+     * @param spacing     spacing between pages, used if pageSpacing is null
+     * @return length of the document
+     */
+    public static float documentLength(float[] pageWidths, float[] pageHeights, boolean vertical,
+                                       float[] pageSpacing, int spacing) {
+        int pagesCount = pageWidths.length;
+        float length = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            length += vertical ? pageHeights[i] : pageWidths[i];
+            if (pageSpacing != null) {
+                length += pageSpacing[i];
+            } else if (i < pagesCount - 1) {
+                length += spacing;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Calculate where every page is placed and where its part of the document starts,
+     * half of its spacing before its offset
+     *
+     * @param pageSpacing see {@link #documentLength}
+     * @param pageOffsets filled with offsets of pages
+     * @param pageStarts  filled with starts of pages, never decreasing, see {@link #pageAtOffset}
+     */
+    public static void pageOffsets(float[] pageWidths, float[] pageHeights, boolean vertical,
+                                   float[] pageSpacing, int spacing, float[] pageOffsets, float[] pageStarts) {
+        int pagesCount = pageWidths.length;
+        float offset = 0;
+        for (int i = 0; i < pagesCount; i++) {
+            float size = vertical ? pageHeights[i] : pageWidths[i];
+            if (pageSpacing != null) {
+                offset += pageSpacing[i] / 2f;
+                if (i == 0) {
+                    offset -= spacing / 2f;
+                } else if (i == pagesCount - 1) {
+                    offset += spacing / 2f;
+                }
+                pageOffsets[i] = offset;
+                pageStarts[i] = offset - pageSpacing[i] / 2f;
+                offset += size + pageSpacing[i] / 2f;
+            } else {
+                pageOffsets[i] = offset;
+                pageStarts[i] = offset - spacing / 2f;
+                offset += size + spacing;
+            }
+        }
+    }
+
+    /**
+     * Binary search for the page at an offset
+     *
+     * @param pageStarts starts of pages, see {@link #pageOffsets}
+     * @param offset     offset at given zoom
+     * @return index of the page, 0 if the offset is before the first page
+     */
+    public static int pageAtOffset(float[] pageStarts, float offset, float zoom) {
+        // find the first page starting at or after the offset, the page before it contains the offset
+        int low = 0;
+        int high = pageStarts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pageStarts[middle] * zoom >= offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low > 0 ? low - 1 : 0;
+    }
+
+    /**
+     * Pair pages into spreads in one pass over pages in reading order, from the last page for RTL.
+     * A page starts a spread on its leading side, left for LTR and right for RTL. A page at
+     * a break ends its spread, or starts a new one on the trailing side if the leading one is taken
+     *
+     * @param breaks     positions of pages in reading order, counted from 1, which end a spread
+     * @param leftPages  filled with left page of every spread, -1 for an empty side, at least pageCount long.
+     *                   There are never more spreads than pages, as every spread has at least one
+     * @param rightPages filled with right page of every spread, as leftPages
+     * @return number of spreads
+     */
+    public static int pairSpreads(int pageCount, BitSet breaks, boolean rtl, int[] leftPages, int[] rightPages) {
+        Arrays.fill(leftPages, 0, pageCount, -1);
+        Arrays.fill(rightPages, 0, pageCount, -1);
+        int[] leadingPages = rtl ? rightPages : leftPages;
+        int[] trailingPages = rtl ? leftPages : rightPages;
+        int spread = 0;
+        boolean isLeading = true;
+        for (int i = 0; i < pageCount; i++) {
+            int page = rtl ? pageCount - 1 - i : i;
+            boolean isBreak = false;
+            if (breaks.get(i + 1)) {
+                if (isLeading) {
+                    isBreak = true;
+                } else {
+                    spread++;
+                }
+            }
+            if (isLeading) {
+                leadingPages[spread] = page;
+            } else {
+                trailingPages[spread] = page;
+            }
+            if (isBreak) {
+                spread++;
+            } else if (isLeading) {
+                isLeading = false;
+            } else {
+                isLeading = true;
+                spread++;
+            }
+        }
+        // the last spread is still open if it got only its leading page
+        int spreadCount = isLeading ? spread : spread + 1;
+        if (rtl) {
+            // spreads were collected from the last one, turn them to go from the first page
+            for (int low = 0, high = spreadCount - 1; low < high; low++, high--) {
+                int left = leftPages[low];
+                leftPages[low] = leftPages[high];
+                leftPages[high] = left;
+                int right = rightPages[low];
+                rightPages[low] = rightPages[high];
+                rightPages[high] = right;
+            }
+        }
+        return spreadCount;
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Bookkeeping of rendered parts. Parts requested by the current set are active, parts of previous
+ * sets are passive and recycled first when the cache is full, ordered by cache order.
+ * <p>
+ * Not thread safe, callers synchronize access.
+ */
+public class PartCache<P extends PartCache.Part> {
+
+    /**
+     * Rendered part as seen by the cache
+     */
+    public interface Part {
+
+        int getPage();
+
+        /**
+         * @return zoom level the parts grid was calculated for, higher is finer
+         */
+        int getLevel();
+
+        int getCacheOrder();
+
+        void setCacheOrder(int cacheOrder);
+
+        /**
+         * @return true if it's a part of the page with given page relative bounds
+         */
+        boolean isAt(int page, float left, float top, float right, float bottom);
+
+        /**
+         * Free pixels of the part, it's not used anymore
+         */
+        void recycle();
+    }
+
+    /**
+     * Set id of parts which are not counted as pending of any set
+     */
+    public static final int NO_SET = 0;
+
+    private final int capacity;
+
+    private final PriorityQueue<P> passiveCache;
+
+    private final PriorityQueue<P> activeCache;
+
+    /**
+     * Id of the last set started with {@link #makeANewSet()}
+     */
+    private int lastSet = NO_SET;
+
+    /**
+     * Set whose parts are counted in {@link #pendingParts}
+     */
+    private int requestedSet = NO_SET;
+
+    /**
+     * Zoom level of the parts requested by the last set
+     */
+    private int currentLevel;
+
+    /**
+     * Parts of the requested set which were sent to rendering and are neither rendered nor dropped yet.
+     * Until it drops to zero, parts of other levels are kept to cover the screen
+     */
+    private int pendingParts;
+
+    /**
+     * @param capacity maximum number of active and passive parts
+     */
+    public PartCache(int capacity) {
+        this.capacity = capacity;
+        Comparator<P> orderComparator = new Comparator<P>() {
+            @Override
+            public int compare(P part1, P part2) {
+                if (part1.getCacheOrder() == part2.getCacheOrder()) {
+                    return 0;
+                }
+                return part1.getCacheOrder() > part2.getCacheOrder() ? 1 : -1;
+            }
+        };
+        activeCache = new PriorityQueue<>(Math.max(1, capacity), orderComparator);
+        passiveCache = new PriorityQueue<>(Math.max(1, capacity), orderComparator);
+    }
+
+    /**
+     * Add a rendered part to the current set, recycling passive and then the oldest active parts if the cache is full
+     *
+     * @param set set the part was requested by, or {@link #NO_SET}
+     */
+    public void add(P part, int set) {
+        makeAFreeSpace();
+
+        activeCache.offer(part);
+
+        finishParts(set, 1);
+    }
+
+    /**
+     * Parts of given set which were dropped or failed to render, they are not waited for anymore
+     */
+    public void skipParts(int set, int count) {
+        finishParts(set, count);
+    }
+
+    private void finishParts(int set, int count) {
+        if (set != NO_SET && set == requestedSet && pendingParts > 0) {
+            pendingParts -= count;
+            if (pendingParts <= 0) {
+                pendingParts = 0;
+                recycleOtherLevels();
+            }
+        }
+    }
+
+    /**
+     * Set level of the parts requested by given set, parts of other levels are recycled
+     * once all of them are rendered or dropped
+     *
+     * @param set          set returned by {@link #makeANewSet()}
+     * @param level        zoom level of the parts grid
+     * @param pendingParts number of parts sent to rendering
+     */
+    public void setRequestedLevel(int set, int level, int pendingParts) {
+        this.requestedSet = set;
+        this.currentLevel = level;
+        this.pendingParts = pendingParts;
+        if (pendingParts == 0) {
+            recycleOtherLevels();
+        }
+    }
+
+    /**
+     * Parts of current level cover the screen, parts of other levels are not needed anymore
+     */
+    private void recycleOtherLevels() {
+        recycleOtherLevels(passiveCache);
+        recycleOtherLevels(activeCache);
+    }
+
+    private void recycleOtherLevels(PriorityQueue<P> cache) {
+        Iterator<P> iterator = cache.iterator();
+        while (iterator.hasNext()) {
+            P part = iterator.next();
+            if (part.getLevel() != currentLevel) {
+                iterator.remove();
+                part.recycle();
+            }
+        }
+    }
+
+    /**
+     * Start a new set, all parts become passive until they are requested again
+     *
+     * @return id of the new set, parts of previous sets are not counted as pending anymore
+     */
+    public int makeANewSet() {
+        passiveCache.addAll(activeCache);
+        activeCache.clear();
+        lastSet = lastSet == Integer.MAX_VALUE ? NO_SET + 1 : lastSet + 1;
+        return lastSet;
+    }
+
+    private void makeAFreeSpace() {
+        while ((activeCache.size() + passiveCache.size()) >= capacity &&
+                !passiveCache.isEmpty()) {
+            P part = nextPassiveToRecycle();
+            passiveCache.remove(part);
+            part.recycle();
+        }
+
+        while ((activeCache.size() + passiveCache.size()) >= capacity &&
+                !activeCache.isEmpty()) {
+            activeCache.poll().recycle();
+        }
+    }
+
+    /**
+     * Passive parts of current level are outside of the screen, so they go first.
+     * Parts of other levels may still be drawn under not yet rendered parts
+     */
+    private P nextPassiveToRecycle() {
+        P candidate = null;
+        for (P part : passiveCache) {
+            if (part.getLevel() == currentLevel
+                    && (candidate == null || part.getCacheOrder() < candidate.getCacheOrder())) {
+                candidate = part;
+            }
+        }
+        return candidate != null ? candidate : passiveCache.peek();
+    }
+
+    /**
+     * Recycle passive parts of pages outside of given range
+     */
+    public void recycleOutside(int firstPage, int lastPage) {
+        Iterator<P> iterator = passiveCache.iterator();
+        while (iterator.hasNext()) {
+            P part = iterator.next();
+            if (part.getPage() < firstPage || part.getPage() > lastPage) {
+                iterator.remove();
+                part.recycle();
+            }
+        }
+    }
+
+    /**
+     * Move a cached part of given level to the current set with a new cache order
+     *
+     * @return true if the part is cached, so it doesn't have to be rendered
+     */
+    public boolean upPartIfContained(int page, int level, float left, float top, float right, float bottom, int toOrder) {
+        P found;
+        if ((found = find(passiveCache, page, level, left, top, right, bottom)) != null) {
+            passiveCache.remove(found);
+            found.setCacheOrder(toOrder);
+            activeCache.offer(found);
+            return true;
+        }
+
+        return find(activeCache, page, level, left, top, right, bottom) != null;
+    }
+
+    private P find(PriorityQueue<P> cache, int page, int level, float left, float top, float right, float bottom) {
+        for (P part : cache) {
+            if (part.getLevel() == level && part.isAt(page, left, top, right, bottom)) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add passive and then active parts to the collection
+     */
+    public void collectParts(Collection<? super P> parts) {
+        parts.addAll(passiveCache);
+        parts.addAll(activeCache);
+    }
+
+    public int size() {
+        return activeCache.size() + passiveCache.size();
+    }
+
+    /**
+     * Recycle all parts
+     */
+    public void recycle() {
+        for (P part : passiveCache) {
+            part.recycle();
+        }
+        passiveCache.clear();
+        for (P part : activeCache) {
+            part.recycle();
+        }
+        activeCache.clear();
+    }
+}
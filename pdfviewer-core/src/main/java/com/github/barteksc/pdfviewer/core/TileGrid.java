@@ -0,0 +1,155 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import com.github.barteksc.pdfviewer.util.MathUtils;
+
+/**
+ * Splitting of pages into parts rendered separately. Parts are laid out in a grid of rows and columns,
+ * their bounds are relative to the page, from 0 to 1
+ */
+public class TileGrid {
+
+    private TileGrid() {
+        // Prevents instantiation
+    }
+
+    /**
+     * @param pageSide   width or height of the page at zoom 1
+     * @param renderZoom zoom the grid is calculated for
+     * @param partSize   side of a part in pixels
+     * @return number of columns or rows covering the side
+     */
+    public static int partCount(float pageSide, float renderZoom, float partSize) {
+        float ratio = 1f / pageSide;
+        float relativePartSize = (partSize * ratio) / renderZoom;
+        return MathUtils.ceil(1f / relativePartSize);
+    }
+
+    /**
+     * Deep zoom tiling, page is split into 2^n x 2^n tiles, so every tile of a level is split
+     * into four tiles of the next one. The longer side of a tile is at most partSize
+     *
+     * @return number of both columns and rows
+     */
+    public static int quadPartCount(float pageWidth, float pageHeight, float renderZoom, float partSize) {
+        float longerSide = Math.max(pageWidth, pageHeight) * renderZoom;
+        return MathUtils.nextPowerOfTwo(MathUtils.ceil(longerSide / partSize));
+    }
+
+    /**
+     * Page relative bounds of a cell, cells of the last row and column are cut to the page
+     *
+     * @param relativePartWidth  width of a part relative to the page
+     * @param relativePartHeight height of a part relative to the page
+     * @param renderWidth        width in pixels of the whole page rendered at the grid zoom
+     * @param renderHeight       height in pixels of the whole page rendered at the grid zoom
+     * @param bounds             filled with left, top, width and height of the cell
+     * @return false if the cell is outside of the page or too small to be rendered
+     */
+    public static boolean cellBounds(int row, int col, float relativePartWidth, float relativePartHeight,
+                                     float renderWidth, float renderHeight, float[] bounds) {
+        float relX = relativePartWidth * col;
+        float relY = relativePartHeight * row;
+        float relWidth = Math.min(relativePartWidth, 1 - relX);
+        float relHeight = Math.min(relativePartHeight, 1 - relY);
+        if (renderWidth * relWidth > 0 && renderHeight * relHeight > 0) {
+            bounds[0] = relX;
+            bounds[1] = relY;
+            bounds[2] = relWidth;
+            bounds[3] = relHeight;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Grid of one page at a render zoom, size of its parts and range of cells to load.
+     * Instances are reused for every planned page
+     */
+    public static class PageGrid {
+
+        public int rows;
+        public int cols;
+        /**
+         * Size of a part relative to the page
+         */
+        public float relativePartWidth;
+        public float relativePartHeight;
+        /**
+         * Size in pixels of the whole page rendered at the grid zoom
+         */
+        public float renderWidth;
+        public float renderHeight;
+        /**
+         * Range of cells to load, inclusive, within the grid
+         */
+        public int firstRow;
+        public int lastRow;
+        public int firstCol;
+        public int lastCol;
+
+        /**
+         * Calculate the grid and size of parts of a page, the range covers the whole page
+         *
+         * @param pageWidth  width of the page at zoom 1
+         * @param pageHeight height of the page at zoom 1
+         * @param renderZoom zoom of the render level
+         * @param partSize   side of a part in pixels
+         * @param deepZoom   true for square tiles of {@link #quadPartCount}
+         */
+        public void plan(float pageWidth, float pageHeight, float renderZoom, float partSize, boolean deepZoom) {
+            if (deepZoom) {
+                rows = cols = quadPartCount(pageWidth, pageHeight, renderZoom, partSize);
+            } else {
+                rows = partCount(pageHeight, renderZoom, partSize);
+                cols = partCount(pageWidth, renderZoom, partSize);
+            }
+            relativePartWidth = 1f / (float) cols;
+            relativePartHeight = 1f / (float) rows;
+            renderWidth = partSize / relativePartWidth;
+            renderHeight = partSize / relativePartHeight;
+            if (deepZoom) {
+                // tiles are square in page relative units, keep aspect ratio of the page
+                float longerSide = Math.max(pageWidth, pageHeight);
+                renderWidth *= pageWidth / longerSide;
+                renderHeight *= pageHeight / longerSide;
+            }
+            firstRow = 0;
+            lastRow = rows - 1;
+            firstCol = 0;
+            lastCol = cols - 1;
+        }
+
+        /**
+         * Limit the range to cells intersecting the visible area of the page, given by its left, top,
+         * right and bottom relative to the page in pixels at current zoom. Call after {@link #plan}.
+         * The range is empty if the area is outside of the page
+         *
+         * @param scaledPageWidth  width of the page at current zoom
+         * @param scaledPageHeight height of the page at current zoom
+         */
+        public void setVisibleRange(float scaledPageWidth, float scaledPageHeight,
+                                    float left, float top, float right, float bottom) {
+            float rowHeight = scaledPageHeight / rows;
+            float colWidth = scaledPageWidth / cols;
+            firstRow = MathUtils.floor(Math.max(top, 0) / rowHeight);
+            lastRow = Math.min(rows - 1, MathUtils.floor(Math.max(bottom, 0) / rowHeight));
+            firstCol = MathUtils.floor(Math.max(left, 0) / colWidth);
+            lastCol = Math.min(cols - 1, MathUtils.floor(Math.max(right, 0) / colWidth));
+        }
+    }
+}
@@ -20,6 +20,8 @@ public class MathUtils {
     static private final int BIG_ENOUGH_INT = 16 * 1024;
     static private final double BIG_ENOUGH_FLOOR = BIG_ENOUGH_INT;
     static private final double BIG_ENOUGH_CEIL = 16384.999999999996;
+    /** Zoom a float error above a level stays at it, see {@link #zoomLevel(float, float)} */
+    static private final double ZOOM_LEVEL_EPSILON = 1e-3;
 
     private MathUtils() {
         // Prevents instantiation
@@ -87,6 +89,31 @@ public class MathUtils {
         return number;
     }
 
+    /**
+     * Index of the lowest discrete zoom level not below the given zoom, levels are powers of <b>step</b>
+     * (level 0 is zoom 1). Parts rendered at it are never scaled up on the screen
+     */
+    public static int zoomLevel(float zoom, float step) {
+        return (int) Math.ceil(Math.log(zoom) / Math.log(step) - ZOOM_LEVEL_EPSILON);
+    }
+
+    /**
+     * Zoom of the discrete level, see {@link #zoomLevel(float, float)}
+     */
+    public static float levelZoom(int level, float step) {
+        return (float) Math.pow(step, level);
+    }
+
+    /**
+     * Smallest power of two greater than or equal to the given positive number
+     */
+    public static int nextPowerOfTwo(int number) {
+        if (number <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(number - 1) << 1;
+    }
+
     /**
      * Methods from libGDX - https://github.com/libgdx/libgdx
      */
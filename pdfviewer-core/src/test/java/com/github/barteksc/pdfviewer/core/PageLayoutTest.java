@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PageLayoutTest {
+
+    @Test
+    public void pairSpreadsWithoutBreaks() {
+        int[] left = new int[3];
+        int[] right = new int[3];
+        int count = PageLayout.pairSpreads(3, new BitSet(), false, left, right);
+
+        assertEquals(2, count);
+        assertArrayEquals(new int[]{0, 2}, Arrays.copyOf(left, count));
+        assertArrayEquals(new int[]{1, -1}, Arrays.copyOf(right, count));
+    }
+
+    @Test
+    public void pairSpreadsLtrWithCoverBreak() {
+        BitSet breaks = new BitSet();
+        breaks.set(1);
+        int[] left = new int[5];
+        int[] right = new int[5];
+        int count = PageLayout.pairSpreads(5, breaks, false, left, right);
+
+        // cover alone, then pairs
+        assertEquals(3, count);
+        assertArrayEquals(new int[]{0, 1, 3}, Arrays.copyOf(left, count));
+        assertArrayEquals(new int[]{-1, 2, 4}, Arrays.copyOf(right, count));
+    }
+
+    @Test
+    public void pairSpreadsLtrWithBreakOnTrailingPage() {
+        BitSet breaks = new BitSet();
+        breaks.set(2);
+        int[] left = new int[4];
+        int[] right = new int[4];
+        int count = PageLayout.pairSpreads(4, breaks, false, left, right);
+
+        // the leading side of the first spread is taken, so the second page starts a new one
+        assertEquals(3, count);
+        assertArrayEquals(new int[]{0, -1, 2}, Arrays.copyOf(left, count));
+        assertArrayEquals(new int[]{-1, 1, 3}, Arrays.copyOf(right, count));
+    }
+
+    @Test
+    public void pairSpreadsRtlWithCoverBreak() {
+        BitSet breaks = new BitSet();
+        breaks.set(1);
+        int[] left = new int[5];
+        int[] right = new int[5];
+        int count = PageLayout.pairSpreads(5, breaks, true, left, right);
+
+        // pages are paired from the last one, which is alone on the right, spreads go from the first page
+        assertEquals(3, count);
+        assertArrayEquals(new int[]{0, 2, -1}, Arrays.copyOf(left, count));
+        assertArrayEquals(new int[]{1, 3, 4}, Arrays.copyOf(right, count));
+    }
+
+    @Test
+    public void pairSpreadsRtlWithoutBreaks() {
+        int[] left = new int[4];
+        int[] right = new int[4];
+        int count = PageLayout.pairSpreads(4, new BitSet(), true, left, right);
+
+        assertEquals(2, count);
+        assertArrayEquals(new int[]{0, 2}, Arrays.copyOf(left, count));
+        assertArrayEquals(new int[]{1, 3}, Arrays.copyOf(right, count));
+    }
+
+    @Test
+    public void pageAtOffset() {
+        float[] pageStarts = {0, 100, 250};
+
+        assertEquals(0, PageLayout.pageAtOffset(pageStarts, -5, 1));
+        assertEquals(0, PageLayout.pageAtOffset(pageStarts, 50, 1));
+        assertEquals(1, PageLayout.pageAtOffset(pageStarts, 150, 1));
+        assertEquals(2, PageLayout.pageAtOffset(pageStarts, 1000, 1));
+    }
+
+    @Test
+    public void pageAtOffsetScalesStarts() {
+        float[] pageStarts = {0, 100, 250};
+
+        assertEquals(1, PageLayout.pageAtOffset(pageStarts, 250, 2));
+        assertEquals(2, PageLayout.pageAtOffset(pageStarts, 501, 2));
+    }
+
+    @Test
+    public void pageOffsetsMatchLookup() {
+        float[] widths = {100, 100, 100};
+        float[] heights = {200, 100, 300};
+        float[] offsets = new float[3];
+        float[] starts = new float[3];
+        PageLayout.pageOffsets(widths, heights, true, null, 10, offsets, starts);
+
+        assertArrayEquals(new float[]{0, 210, 320}, offsets, 0.001f);
+        for (int page = 0; page < 3; page++) {
+            assertEquals(page, PageLayout.pageAtOffset(starts, offsets[page] + 1, 1));
+        }
+    }
+}
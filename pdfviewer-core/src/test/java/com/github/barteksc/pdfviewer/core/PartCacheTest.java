@@ -0,0 +1,161 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PartCacheTest {
+
+    private final PartCache<TestPart> cache = new PartCache<>(10);
+    private int order = 0;
+
+    @Test
+    public void otherLevelsKeptUntilRequestedPartsArrive() {
+        int set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 0, 2);
+        TestPart coarse1 = add(0, 0, set);
+        TestPart coarse2 = add(1, 0, set);
+
+        set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 1, 2);
+        add(0, 1, set);
+
+        assertFalse(coarse1.recycled);
+        assertFalse(coarse2.recycled);
+        assertEquals(3, cache.size());
+
+        add(1, 1, set);
+
+        assertTrue(coarse1.recycled);
+        assertTrue(coarse2.recycled);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void skippedPartsAreNotWaitedFor() {
+        int set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 0, 1);
+        TestPart coarse = add(0, 0, set);
+
+        set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 1, 2);
+        add(0, 1, set);
+        assertFalse(coarse.recycled);
+
+        cache.skipParts(set, 1);
+
+        assertTrue(coarse.recycled);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void partsOfOlderSetsAreNotCounted() {
+        int oldSet = cache.makeANewSet();
+        cache.setRequestedLevel(oldSet, 0, 1);
+        TestPart coarse = add(0, 0, oldSet);
+
+        oldSet = cache.makeANewSet();
+        cache.setRequestedLevel(oldSet, 1, 1);
+        int set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 1, 1);
+        add(0, 1, oldSet);
+        add(1, 1, PartCache.NO_SET);
+
+        assertFalse(coarse.recycled);
+
+        add(2, 1, set);
+
+        assertTrue(coarse.recycled);
+    }
+
+    @Test
+    public void nothingPendingRecyclesOtherLevels() {
+        int set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 0, 1);
+        TestPart coarse = add(0, 0, set);
+
+        set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 1, 0);
+
+        assertTrue(coarse.recycled);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cachedPartIsFoundOnlyAtItsLevel() {
+        int set = cache.makeANewSet();
+        cache.setRequestedLevel(set, 0, 1);
+        add(3, 0, set);
+
+        cache.makeANewSet();
+
+        assertFalse(cache.upPartIfContained(3, 1, 0, 0, 1, 1, order++));
+        assertTrue(cache.upPartIfContained(3, 0, 0, 0, 1, 1, order++));
+    }
+
+    private TestPart add(int page, int level, int set) {
+        TestPart part = new TestPart(page, level, order++);
+        cache.add(part, set);
+        return part;
+    }
+
+    private static class TestPart implements PartCache.Part {
+        private final int page;
+        private final int level;
+        private int cacheOrder;
+        boolean recycled;
+
+        TestPart(int page, int level, int cacheOrder) {
+            this.page = page;
+            this.level = level;
+            this.cacheOrder = cacheOrder;
+        }
+
+        @Override
+        public int getPage() {
+            return page;
+        }
+
+        @Override
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public int getCacheOrder() {
+            return cacheOrder;
+        }
+
+        @Override
+        public void setCacheOrder(int cacheOrder) {
+            this.cacheOrder = cacheOrder;
+        }
+
+        @Override
+        public boolean isAt(int page, float left, float top, float right, float bottom) {
+            return this.page == page && left == 0 && top == 0 && right == 1 && bottom == 1;
+        }
+
+        @Override
+        public void recycle() {
+            recycled = true;
+        }
+    }
+}
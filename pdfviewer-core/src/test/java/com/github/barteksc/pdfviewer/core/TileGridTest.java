@@ -0,0 +1,120 @@
+/**
+ * Copyright 2017 Bartosz Schiller
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.barteksc.pdfviewer.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TileGridTest {
+
+    private final TileGrid.PageGrid grid = new TileGrid.PageGrid();
+
+    @Test
+    public void planCoversPageWithParts() {
+        grid.plan(1000, 500, 1, 256, false);
+
+        assertEquals(2, grid.rows);
+        assertEquals(4, grid.cols);
+        assertEquals(1024, grid.renderWidth, 0.01f);
+        assertEquals(512, grid.renderHeight, 0.01f);
+        assertEquals(0, grid.firstRow);
+        assertEquals(1, grid.lastRow);
+        assertEquals(0, grid.firstCol);
+        assertEquals(3, grid.lastCol);
+    }
+
+    @Test
+    public void deepZoomKeepsAspectRatioOfPage() {
+        grid.plan(1000, 500, 1, 256, true);
+
+        assertEquals(4, grid.rows);
+        assertEquals(4, grid.cols);
+        // square tiles in page relative units, so they are half as high in pixels
+        assertEquals(1024, grid.renderWidth, 0.01f);
+        assertEquals(512, grid.renderHeight, 0.01f);
+    }
+
+    @Test
+    public void deepZoomSplitsTilesOfPreviousLevel() {
+        grid.plan(600, 800, 1, 256, true);
+        int rows = grid.rows;
+
+        grid.plan(600, 800, 2, 256, true);
+
+        assertEquals(2 * rows, grid.rows);
+    }
+
+    @Test
+    public void visibleRangeIsClippedToArea() {
+        grid.plan(1000, 500, 1, 250, false);
+        grid.setVisibleRange(1000, 500, 300, 100, 600, 400);
+
+        assertEquals(0, grid.firstRow);
+        assertEquals(1, grid.lastRow);
+        assertEquals(1, grid.firstCol);
+        assertEquals(2, grid.lastCol);
+    }
+
+    @Test
+    public void visibleRangeStaysWithinGrid() {
+        grid.plan(500, 1000, 1, 250, false);
+        grid.setVisibleRange(500, 1000, -100, 200, 900, 1200);
+
+        assertEquals(0, grid.firstCol);
+        assertEquals(1, grid.lastCol);
+        assertEquals(0, grid.firstRow);
+        assertEquals(3, grid.lastRow);
+    }
+
+    @Test
+    public void deepZoomRangeCoversOnlyScreen() {
+        // 128 x 128 tiles at zoom 40, the screen is in the middle of the page
+        grid.plan(600, 800, 40, 256, true);
+        grid.setVisibleRange(24000, 32000, 12000, 16000, 13080, 17920);
+
+        assertEquals(128, grid.rows);
+        assertEquals(64, grid.firstRow);
+        assertEquals(71, grid.lastRow);
+        assertEquals(64, grid.firstCol);
+        assertEquals(69, grid.lastCol);
+    }
+
+    @Test
+    public void visibleRangeOutsideOfPageIsEmpty() {
+        grid.plan(1000, 500, 1, 250, false);
+        grid.setVisibleRange(1000, 500, 0, 600, 1000, 900);
+
+        assertTrue(grid.firstRow > grid.lastRow);
+    }
+
+    @Test
+    public void cellBoundsAreCutToPage() {
+        float[] bounds = new float[4];
+        grid.plan(1000, 500, 1, 256, false);
+
+        assertTrue(TileGrid.cellBounds(1, 3, grid.relativePartWidth, grid.relativePartHeight,
+                grid.renderWidth, grid.renderHeight, bounds));
+        assertEquals(0.75f, bounds[0], 0.0001f);
+        assertEquals(0.5f, bounds[1], 0.0001f);
+        assertEquals(0.25f, bounds[2], 0.0001f);
+        assertEquals(0.5f, bounds[3], 0.0001f);
+        assertFalse(TileGrid.cellBounds(2, 0, grid.relativePartWidth, grid.relativePartHeight,
+                grid.renderWidth, grid.renderHeight, bounds));
+    }
+}